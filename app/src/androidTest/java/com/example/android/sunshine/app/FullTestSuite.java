@@ -21,9 +21,15 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 public class FullTestSuite extends TestSuite {
+    // The benchmarks start a real sync and time the device, so they are run on their own
+    private static final String BENCHMARK_PACKAGE =
+            FullTestSuite.class.getPackage().getName() + ".benchmark";
+
     public static Test suite() {
         return new TestSuiteBuilder(FullTestSuite.class)
-                .includeAllPackagesUnderHere().build();
+                .includeAllPackagesUnderHere()
+                .excludePackages(BENCHMARK_PACKAGE)
+                .build();
     }
 
     public FullTestSuite() {
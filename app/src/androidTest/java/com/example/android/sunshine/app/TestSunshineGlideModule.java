@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
+
+/*
+    Checks that SunshineGlideModule never reserves more memory for Glide's caches than Glide's
+    defaults for this device would, and logs both under the LOG_TAG below.  The heap actually
+    used is measured by the memory benchmarks in the benchmark package.
+ */
+public class TestSunshineGlideModule extends AndroidTestCase {
+    private static final String LOG_TAG = TestSunshineGlideModule.class.getSimpleName();
+
+    public void testCacheSizes() {
+        MemorySizeCalculator calculator = new MemorySizeCalculator(mContext);
+        int memoryCacheSize = SunshineGlideModule.getMemoryCacheSize(mContext);
+        int bitmapPoolSize = SunshineGlideModule.getBitmapPoolSize(mContext);
+        Log.i(LOG_TAG, "Memory cache " + memoryCacheSize + " bytes, Glide's default "
+                + calculator.getMemoryCacheSize() + " bytes");
+        Log.i(LOG_TAG, "Bitmap pool " + bitmapPoolSize + " bytes, Glide's default "
+                + calculator.getBitmapPoolSize() + " bytes");
+
+        assertTrue("Error: the memory cache is bigger than Glide's default",
+                memoryCacheSize <= calculator.getMemoryCacheSize());
+        assertTrue("Error: the bitmap pool is bigger than Glide's default",
+                bitmapPoolSize <= calculator.getBitmapPoolSize());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.benchmark;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.text.format.Time;
+
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+/*
+    A forecast for the preferred location, starting today, that a benchmark inserts in setUp the
+    way the sync adapter would and deletes again in tearDown, so that it doesn't linger in the
+    provider after the test.
+ */
+class BenchmarkForecast {
+    private final Context mContext;
+    private long mLocationRowId = -1;
+    private boolean mInsertedLocation;
+    private long mFirstDate;
+
+    BenchmarkForecast(Context context) {
+        mContext = context;
+    }
+
+    void insert(int days) {
+        insert(days, new int[]{800});
+    }
+
+    /**
+     * @param weatherIds Weather condition ids given to the days in turn
+     */
+    void insert(int days, int[] weatherIds) {
+        String locationSetting = Utility.getPreferredLocation(mContext);
+        Cursor locationCursor = mContext.getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                new String[]{WeatherContract.LocationEntry._ID},
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{locationSetting},
+                null);
+        if (locationCursor.moveToFirst()) {
+            mLocationRowId = locationCursor.getLong(0);
+        } else {
+            ContentValues locationValues = new ContentValues();
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
+                    locationSetting);
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, "Mountain View");
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, 37.4056);
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, -122.0775);
+            mLocationRowId = ContentUris.parseId(mContext.getContentResolver()
+                    .insert(WeatherContract.LocationEntry.CONTENT_URI, locationValues));
+            mInsertedLocation = true;
+        }
+        locationCursor.close();
+
+        Time dayTime = new Time();
+        dayTime.setToNow();
+        int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+        dayTime = new Time();
+        mFirstDate = dayTime.setJulianDay(julianStartDay);
+
+        ContentValues[] weatherValues = new ContentValues[days];
+        for (int i = 0; i < days; i++) {
+            ContentValues values = new ContentValues();
+            values.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, mLocationRowId);
+            values.put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                    dayTime.setJulianDay(julianStartDay + i));
+            values.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, 1.1);
+            values.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, 1.2);
+            values.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, 1.3);
+            values.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, 20 + i);
+            values.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, 10 - i);
+            values.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, "Clear");
+            values.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, 5.5);
+            values.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+                    weatherIds[i % weatherIds.length]);
+            weatherValues[i] = values;
+        }
+        mContext.getContentResolver()
+                .bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, weatherValues);
+    }
+
+    // Deletes the days inserted, and the location too if it was inserted for the benchmark
+    void delete() {
+        if (mLocationRowId == -1) {
+            return;
+        }
+        mContext.getContentResolver().delete(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND "
+                        + WeatherContract.WeatherEntry.COLUMN_DATE + " >= ?",
+                new String[]{Long.toString(mLocationRowId), Long.toString(mFirstDate)});
+        if (mInsertedLocation) {
+            mContext.getContentResolver().delete(
+                    WeatherContract.LocationEntry.CONTENT_URI,
+                    WeatherContract.LocationEntry._ID + " = ?",
+                    new String[]{Long.toString(mLocationRowId)});
+        }
+        mLocationRowId = -1;
+        mInsertedLocation = false;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.benchmark;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.preference.PreferenceManager;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.manager.RequestManagerRetriever;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.SunshineGlideModule;
+import com.example.android.sunshine.app.SunshineSettings;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.Assert;
+
+/*
+    Lets a memory benchmark run the same pass once with Glide's defaults and once with
+    SunshineGlideModule, and measures the heap each pass leaves in use.
+
+    Glide is a process-wide singleton that is configured once, so before each pass its caches
+    are cleared, and the singleton and the application-wide RequestManager holding on to it are
+    dropped through reflection, so that the next load builds Glide again.  The art pack is
+    pointed at the app's own art through android.resource urls, so the art goes through Glide
+    without the network.  The urls are tagged with the pass, so nothing cached by one pass, such
+    as the detail widget's icons, is found by the next.
+ */
+class GlideMemory {
+    // Allows for the heap moving a little between passes for reasons of its own
+    static final long TOLERANCE_BYTES = 512 * 1024;
+
+    private static final int GC_ROUNDS = 3;
+
+    private final Context mContext;
+    private final String mArtPackKey;
+    private final String mOldArtPack;
+
+    GlideMemory(Context context) {
+        mContext = context;
+        mArtPackKey = context.getString(R.string.pref_art_pack_key);
+        mOldArtPack = getPrefs().getString(mArtPackKey, null);
+    }
+
+    /**
+     * Starts a pass with a newly built Glide.
+     *
+     * @return the heap in use before the pass, to subtract from the heap after it
+     */
+    long startPass(boolean useModule) {
+        resetGlide();
+        SunshineGlideModule.setUseGlideDefaults(!useModule);
+        setArtPack("android.resource://" + mContext.getPackageName() + "/drawable/art_%s#"
+                + (useModule ? "module" : "defaults"));
+        return measureHeap();
+    }
+
+    /**
+     * Puts Glide and the art pack back the way they were before the benchmark.
+     */
+    void restore() {
+        resetGlide();
+        SunshineGlideModule.setUseGlideDefaults(false);
+        setArtPack(mOldArtPack);
+    }
+
+    /**
+     * @return the Java and native heap in use once everything unreachable has been collected.
+     * Bitmaps are on the Java heap before Oreo and on the native heap from Oreo on.
+     */
+    static long measureHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < GC_ROUNDS; i++) {
+            runtime.gc();
+            runtime.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+    }
+
+    static String report(String pass, long defaultsBytes, long moduleBytes) {
+        return pass + ": " + defaultsBytes / 1024 + "KB of heap with Glide's defaults, "
+                + moduleBytes / 1024 + "KB with SunshineGlideModule";
+    }
+
+    static void assertNotWorse(String pass, long defaultsBytes, long moduleBytes) {
+        Assert.assertTrue("Error: " + report(pass, defaultsBytes, moduleBytes),
+                moduleBytes <= defaultsBytes + TOLERANCE_BYTES);
+    }
+
+    private void setArtPack(String artPack) {
+        SharedPreferences.Editor editor = getPrefs().edit();
+        if (artPack == null) {
+            editor.remove(mArtPackKey);
+        } else {
+            editor.putString(mArtPackKey, artPack);
+        }
+        editor.commit();
+        SunshineSettings.refresh(mContext);
+    }
+
+    private SharedPreferences getPrefs() {
+        return PreferenceManager.getDefaultSharedPreferences(mContext);
+    }
+
+    private void resetGlide() {
+        // Glide's memory can only be cleared on the main thread
+        final CountDownLatch cleared = new CountDownLatch(1);
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                Glide.get(mContext).clearMemory();
+                cleared.countDown();
+            }
+        });
+        try {
+            cleared.await();
+            Field glide = Glide.class.getDeclaredField("glide");
+            glide.setAccessible(true);
+            glide.set(null, null);
+            Field applicationManager =
+                    RequestManagerRetriever.class.getDeclaredField("applicationManager");
+            applicationManager.setAccessible(true);
+            applicationManager.set(RequestManagerRetriever.get(), null);
+        } catch (InterruptedException | NoSuchFieldException | IllegalAccessException e) {
+            throw new IllegalStateException("Couldn't reset Glide between passes", e);
+        }
+    }
+}
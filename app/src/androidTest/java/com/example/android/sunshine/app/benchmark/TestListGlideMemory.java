@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.benchmark;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.support.v7.widget.RecyclerView;
+import android.test.InstrumentationTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import com.example.android.sunshine.app.ForecastCache;
+import com.example.android.sunshine.app.MainActivity;
+import com.example.android.sunshine.app.R;
+
+/*
+    Measures the heap in use after flinging the forecast list up and down, once with Glide's
+    defaults and once with SunshineGlideModule, and fails if the module uses more.
+
+    The days cycle through different conditions so that the scroll decodes several pieces of
+    art rather than one.  Like the other benchmarks, it isn't part of FullTestSuite.
+ */
+@LargeTest
+public class TestListGlideMemory extends InstrumentationTestCase {
+    private static final String LOG_TAG = TestListGlideMemory.class.getSimpleName();
+
+    private static final int FORECAST_DAYS = 14;
+    private static final int[] WEATHER_IDS = {200, 300, 500, 511, 741, 800, 801, 803};
+    private static final int FLINGS = 10;
+    private static final int FLING_VELOCITY = 8000;
+    // Gives Glide's background decodes time to land after the list stops
+    private static final long SETTLE_MILLIS = 500;
+
+    private Context mContext;
+    private BenchmarkForecast mForecast;
+    private GlideMemory mMemory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext = getInstrumentation().getTargetContext();
+        mForecast = new BenchmarkForecast(mContext);
+        mForecast.insert(FORECAST_DAYS, WEATHER_IDS);
+        mMemory = new GlideMemory(mContext);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mMemory.restore();
+        mForecast.delete();
+        ForecastCache.delete(mContext);
+        super.tearDown();
+    }
+
+    public void testScrollHeap() throws Exception {
+        long defaultsBytes = measureScroll(false);
+        long moduleBytes = measureScroll(true);
+        Log.i(LOG_TAG, GlideMemory.report("Forecast list scroll", defaultsBytes, moduleBytes));
+        GlideMemory.assertNotWorse("Forecast list scroll", defaultsBytes, moduleBytes);
+    }
+
+    private long measureScroll(boolean useModule) throws Exception {
+        // Otherwise the second pass would start from the first pass's cached forecast
+        ForecastCache.delete(mContext);
+        long baseline = mMemory.startPass(useModule);
+
+        Instrumentation instrumentation = getInstrumentation();
+        Intent intent = new Intent(mContext, MainActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        Activity activity = instrumentation.startActivitySync(intent);
+        final RecyclerView recyclerView =
+                (RecyclerView) activity.findViewById(R.id.recyclerview_forecast);
+        TestScrollBenchmark.waitForScrollIdle(instrumentation, recyclerView);
+        for (int i = 0; i < FLINGS; i++) {
+            final int velocity = i % 2 == 0 ? FLING_VELOCITY : -FLING_VELOCITY;
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    recyclerView.fling(0, velocity);
+                }
+            });
+            TestScrollBenchmark.waitForScrollIdle(instrumentation, recyclerView);
+        }
+        Thread.sleep(SETTLE_MILLIS);
+        instrumentation.waitForIdleSync();
+
+        // Measured while the list is still showing, so its art counts
+        long usedBytes = GlideMemory.measureHeap() - baseline;
+        activity.finish();
+        instrumentation.waitForIdleSync();
+        return usedBytes;
+    }
+}
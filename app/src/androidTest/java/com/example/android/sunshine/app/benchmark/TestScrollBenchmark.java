@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.benchmark;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.v7.widget.RecyclerView;
+import android.test.InstrumentationTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import com.example.android.sunshine.app.FrameMonitor;
+import com.example.android.sunshine.app.MainActivity;
+import com.example.android.sunshine.app.R;
+
+/*
+    Flings the forecast list up and down and fails if the 95th percentile frame time, as
+    recorded by FrameMonitor, regresses past P95_THRESHOLD_MILLIS.
+
+    The threshold allows for one missed vsync at 60fps, so that it catches real regressions,
+    such as inflating or decoding during the scroll, rather than noise.  The report is logged
+    under the LOG_TAG below, and appended to the app's frame report file like any other.  Like
+    TestStartupBenchmark, it isn't part of FullTestSuite.
+ */
+@LargeTest
+public class TestScrollBenchmark extends InstrumentationTestCase {
+    private static final String LOG_TAG = TestScrollBenchmark.class.getSimpleName();
+
+    private static final float P95_THRESHOLD_MILLIS = 2 * 1000f / 60;
+    private static final int FORECAST_DAYS = 14;
+    private static final int FLINGS = 10;
+    private static final int FLING_VELOCITY = 8000;
+    private static final long SCROLL_TIMEOUT_MILLIS = 5000;
+    private static final long POLL_MILLIS = 10;
+
+    private Context mContext;
+    private BenchmarkForecast mForecast;
+    private boolean mWasEnabled;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext = getInstrumentation().getTargetContext();
+        mForecast = new BenchmarkForecast(mContext);
+        mForecast.insert(FORECAST_DAYS);
+        mWasEnabled = FrameMonitor.isEnabled();
+        FrameMonitor.setEnabled(true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FrameMonitor.setEnabled(mWasEnabled);
+        mForecast.delete();
+        super.tearDown();
+    }
+
+    public void testFlingFrameTimes() throws Exception {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            Log.i(LOG_TAG, "Frame times can't be measured before Jelly Bean, skipping");
+            return;
+        }
+        Instrumentation instrumentation = getInstrumentation();
+        Intent intent = new Intent(mContext, MainActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        final Activity activity = instrumentation.startActivitySync(intent);
+        final RecyclerView recyclerView =
+                (RecyclerView) activity.findViewById(R.id.recyclerview_forecast);
+        waitForScrollIdle(instrumentation, recyclerView);
+        instrumentation.waitForIdleSync();
+
+        final FrameMonitor monitor = new FrameMonitor("TestScrollBenchmark fling");
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                monitor.start();
+            }
+        });
+        for (int i = 0; i < FLINGS; i++) {
+            final int velocity = i % 2 == 0 ? FLING_VELOCITY : -FLING_VELOCITY;
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    recyclerView.fling(0, velocity);
+                }
+            });
+            waitForScrollIdle(instrumentation, recyclerView);
+        }
+        final FrameMonitor.Report[] report = new FrameMonitor.Report[1];
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                report[0] = monitor.stop();
+            }
+        });
+        activity.finish();
+        instrumentation.waitForIdleSync();
+
+        assertNotNull("Error: no frames were recorded while scrolling", report[0]);
+        Log.i(LOG_TAG, report[0].toString());
+        assertTrue("Error: 95th percentile frame time " + report[0].mP95Millis
+                        + "ms is over the " + P95_THRESHOLD_MILLIS + "ms threshold",
+                report[0].mP95Millis <= P95_THRESHOLD_MILLIS);
+    }
+
+    // Shared with TestListGlideMemory, which scrolls the list the same way
+    static void waitForScrollIdle(Instrumentation instrumentation,
+            final RecyclerView recyclerView) throws Exception {
+        final boolean[] idle = new boolean[1];
+        long deadline = SystemClock.uptimeMillis() + SCROLL_TIMEOUT_MILLIS;
+        do {
+            Thread.sleep(POLL_MILLIS);
+            assertTrue("Error: the list didn't stop scrolling", SystemClock.uptimeMillis() < deadline);
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    idle[0] = recyclerView.getScrollState() == RecyclerView.SCROLL_STATE_IDLE;
+                }
+            });
+        } while (!idle[0]);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.benchmark;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.support.v7.widget.RecyclerView;
+import android.test.InstrumentationTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import com.example.android.sunshine.app.ForecastCache;
+import com.example.android.sunshine.app.MainActivity;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+
+import java.util.Arrays;
+
+/*
+    Measures how long MainActivity takes to show its first forecast row, with and without the
+    cached forecast from ForecastCache.
+
+    The activity is started inside the test's process, so process creation isn't included, but
+    the forecast query and formatting that the cache lets the first frame skip are.  Results are
+    logged under the LOG_TAG below.
+
+    Starting MainActivity also starts a real sync, and the timings depend on the device, so the
+    benchmarks are left out of FullTestSuite and have to be run on their own.
+ */
+@LargeTest
+public class TestStartupBenchmark extends InstrumentationTestCase {
+    private static final String LOG_TAG = TestStartupBenchmark.class.getSimpleName();
+
+    private static final int RUNS = 10;
+    private static final int FORECAST_DAYS = 14;
+    private static final long FIRST_ROW_TIMEOUT_MILLIS = 10000;
+    private static final long POLL_MILLIS = 2;
+
+    private Context mContext;
+    private BenchmarkForecast mForecast;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext = getInstrumentation().getTargetContext();
+        mForecast = new BenchmarkForecast(mContext);
+        mForecast.insert(FORECAST_DAYS);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mForecast.delete();
+        ForecastCache.delete(mContext);
+        super.tearDown();
+    }
+
+    public void testTimeToFirstRow() throws Exception {
+        long[] withoutCache = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            ForecastCache.delete(mContext);
+            withoutCache[i] = measureTimeToFirstRow();
+        }
+
+        // The previous run left the forecast it displayed in the cache
+        long[] withCache = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            assertNotNull("Error: forecast wasn't cached",
+                    ForecastCache.read(mContext, Utility.getPreferredLocation(mContext)));
+            withCache[i] = measureTimeToFirstRow();
+        }
+
+        Log.i(LOG_TAG, "Time to first forecast row without cache: " + report(withoutCache));
+        Log.i(LOG_TAG, "Time to first forecast row with cache: " + report(withCache));
+    }
+
+    private long measureTimeToFirstRow() throws Exception {
+        Instrumentation instrumentation = getInstrumentation();
+        Intent intent = new Intent(mContext, MainActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+
+        long start = System.nanoTime();
+        final Activity activity = instrumentation.startActivitySync(intent);
+        final RecyclerView recyclerView =
+                (RecyclerView) activity.findViewById(R.id.recyclerview_forecast);
+        final boolean[] shown = new boolean[1];
+        long deadline = SystemClock.uptimeMillis() + FIRST_ROW_TIMEOUT_MILLIS;
+        while (!shown[0]) {
+            assertTrue("Error: no forecast row was shown", SystemClock.uptimeMillis() < deadline);
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    shown[0] = recyclerView.getChildCount() > 0;
+                }
+            });
+            if (!shown[0]) {
+                Thread.sleep(POLL_MILLIS);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // Let the loader finish and write the cache before the activity goes away
+        instrumentation.waitForIdleSync();
+        activity.finish();
+        instrumentation.waitForIdleSync();
+        return elapsed;
+    }
+
+    private static String report(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return "median " + sorted[sorted.length / 2] / 1000000f + "ms, min "
+                + sorted[0] / 1000000f + "ms, max " + sorted[sorted.length - 1] / 1000000f + "ms";
+    }
+}
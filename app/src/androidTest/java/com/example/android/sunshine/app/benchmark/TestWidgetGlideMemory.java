@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.benchmark;
+
+import android.content.Intent;
+import android.test.ServiceTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+import android.widget.RemoteViews;
+import android.widget.RemoteViewsService;
+
+import com.example.android.sunshine.app.widget.DetailWidgetRemoteViewsService;
+
+/*
+    Measures the heap in use after the detail widget's factory has built a view for every day,
+    once with Glide's defaults and once with SunshineGlideModule, and fails if the module uses
+    more.  The views are held on to until the heap is measured, as the widget host would.
+
+    The days cycle through different conditions so that the pass loads several icons rather
+    than one.  Like the other benchmarks, it isn't part of FullTestSuite.
+ */
+@LargeTest
+public class TestWidgetGlideMemory extends ServiceTestCase<DetailWidgetRemoteViewsService> {
+    private static final String LOG_TAG = TestWidgetGlideMemory.class.getSimpleName();
+
+    private static final int FORECAST_DAYS = 14;
+    private static final int[] WEATHER_IDS = {200, 300, 500, 511, 741, 800, 801, 803};
+
+    private BenchmarkForecast mForecast;
+    private GlideMemory mMemory;
+
+    public TestWidgetGlideMemory() {
+        super(DetailWidgetRemoteViewsService.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mForecast = new BenchmarkForecast(getContext());
+        mForecast.insert(FORECAST_DAYS, WEATHER_IDS);
+        mMemory = new GlideMemory(getContext());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mMemory.restore();
+        mForecast.delete();
+        super.tearDown();
+    }
+
+    public void testGetViewAtHeap() {
+        long defaultsBytes = measureViews(false);
+        long moduleBytes = measureViews(true);
+        Log.i(LOG_TAG, GlideMemory.report("Detail widget views", defaultsBytes, moduleBytes));
+        GlideMemory.assertNotWorse("Detail widget views", defaultsBytes, moduleBytes);
+    }
+
+    private long measureViews(boolean useModule) {
+        long baseline = mMemory.startPass(useModule);
+
+        Intent intent = new Intent(getContext(), DetailWidgetRemoteViewsService.class);
+        startService(intent);
+        RemoteViewsService.RemoteViewsFactory factory = getService().onGetViewFactory(intent);
+        factory.onCreate();
+        factory.onDataSetChanged();
+        RemoteViews[] views = new RemoteViews[factory.getCount()];
+        assertTrue("Error: the widget has no days to show", views.length > 0);
+        for (int i = 0; i < views.length; i++) {
+            views[i] = factory.getViewAt(i);
+        }
+
+        long usedBytes = GlideMemory.measureHeap() - baseline;
+        assertNotNull("Error: the widget didn't build a view for the last day",
+                views[views.length - 1]);
+        factory.onDestroy();
+        return usedBytes;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.app.Activity;
+import android.os.Process;
+import android.support.v4.os.TraceCompat;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds back work that doesn't need to happen before the user sees the forecast, such as
+ * account setup and GCM registration, until the activity's first frame has been drawn.  The
+ * work then runs in order on a background thread.
+ *
+ * Tasks that need the UI thread for part of their work can post back to it themselves.
+ */
+public class DeferredInitScheduler {
+    private static final String LOG_TAG = DeferredInitScheduler.class.getSimpleName();
+
+    private final List<String> mNames = new ArrayList<String>();
+    private final List<Runnable> mTasks = new ArrayList<Runnable>();
+
+    /**
+     * @param name Name of the task, for its trace section and timing
+     * @param task Work to run on a background thread after the first frame
+     */
+    public DeferredInitScheduler add(String name, Runnable task) {
+        mNames.add(name);
+        mTasks.add(task);
+        return this;
+    }
+
+    /**
+     * Runs the tasks once the activity has drawn its first frame.  This also lets
+     * {@link StartupTracer} know that the first frame is out.
+     */
+    public void startAfterFirstFrame(Activity activity) {
+        final View decorView = activity.getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+                    @Override
+                    public boolean onPreDraw() {
+                        decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                        // The frame is drawn right after this, so wait for the next message
+                        decorView.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                StartupTracer.onFirstFrameDrawn();
+                                start();
+                            }
+                        });
+                        return true;
+                    }
+                });
+    }
+
+    private void start() {
+        final String[] names = mNames.toArray(new String[mNames.size()]);
+        final Runnable[] tasks = mTasks.toArray(new Runnable[mTasks.size()]);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                for (int i = 0; i < tasks.length; i++) {
+                    long startNanos = System.nanoTime();
+                    TraceCompat.beginSection(names[i]);
+                    try {
+                        tasks[i].run();
+                    } finally {
+                        TraceCompat.endSection();
+                    }
+                    if (BuildConfig.DEBUG) {
+                        Log.d(LOG_TAG, names[i] + " took "
+                                + (System.nanoTime() - startNanos) / 1000000f + "ms");
+                    }
+                }
+            }
+        }, LOG_TAG).start();
+    }
+}
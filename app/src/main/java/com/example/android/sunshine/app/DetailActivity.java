@@ -15,12 +15,14 @@
  */
 package com.example.android.sunshine.app;
 
+import android.annotation.TargetApi;
 import android.content.Intent;
 import android.os.Build;
 import android.os.Bundle;
 import android.support.v7.app.ActionBarActivity;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
+import android.transition.Transition;
 import android.view.Menu;
 import android.view.MenuItem;
 
@@ -49,6 +51,44 @@ public class DetailActivity extends AppCompatActivity {
 
             // Being here means we are in animation mode
             supportPostponeEnterTransition();
+
+            if (FrameMonitor.isEnabled() && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                monitorEnterTransition();
+            }
+        }
+    }
+
+    // Reports frame times from now, including waiting for the detail to load, until the shared
+    // element transition into this activity has finished
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void monitorEnterTransition() {
+        Transition transition = getWindow().getSharedElementEnterTransition();
+        if (transition == null) {
+            return;
         }
+        final FrameMonitor monitor = new FrameMonitor("DetailActivity enter transition");
+        monitor.start();
+        transition.addListener(new Transition.TransitionListener() {
+            @Override
+            public void onTransitionEnd(Transition transition) {
+                transition.removeListener(this);
+                monitor.stopAndExport(DetailActivity.this);
+            }
+
+            @Override
+            public void onTransitionCancel(Transition transition) {
+                transition.removeListener(this);
+                monitor.stop();
+            }
+
+            @Override
+            public void onTransitionStart(Transition transition) { }
+
+            @Override
+            public void onTransitionPause(Transition transition) { }
+
+            @Override
+            public void onTransitionResume(Transition transition) { }
+        });
     }
 }
\ No newline at end of file
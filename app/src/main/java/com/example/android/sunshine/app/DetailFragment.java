@@ -16,12 +16,10 @@
 package com.example.android.sunshine.app;
 
 import android.content.Intent;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.CardView;
@@ -38,13 +36,14 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.example.android.sunshine.app.data.WeatherContract;
-import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
 /**
  * A placeholder fragment containing a simple view.
  */
-public class DetailFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor> {
+public class DetailFragment extends Fragment
+        implements LoaderManager.LoaderCallbacks<ForecastSnapshot>, ForecastRepository.Listener {
 
     private static final String LOG_TAG = DetailFragment.class.getSimpleName();
     static final String DETAIL_URI = "URI";
@@ -55,38 +54,14 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
     private String mForecast;
     private Uri mUri;
     private boolean mTransitionAnimation;
+    private ForecastRepository mRepository;
+    // Location our own loader is loading
+    private String mLoaderLocation;
+    // The last forecast our own loader delivered
+    private ForecastSnapshot mLoadedForecast;
 
     private static final int DETAIL_LOADER = 0;
 
-    private static final String[] DETAIL_COLUMNS = {
-            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
-            WeatherEntry.COLUMN_DATE,
-            WeatherEntry.COLUMN_SHORT_DESC,
-            WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherEntry.COLUMN_HUMIDITY,
-            WeatherEntry.COLUMN_PRESSURE,
-            WeatherEntry.COLUMN_WIND_SPEED,
-            WeatherEntry.COLUMN_DEGREES,
-            WeatherEntry.COLUMN_WEATHER_ID,
-            // This works because the WeatherProvider returns location data joined with
-            // weather data, even though they're stored in two different tables.
-            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING
-    };
-
-    // These indices are tied to DETAIL_COLUMNS.  If DETAIL_COLUMNS changes, these
-    // must change.
-    public static final int COL_WEATHER_ID = 0;
-    public static final int COL_WEATHER_DATE = 1;
-    public static final int COL_WEATHER_DESC = 2;
-    public static final int COL_WEATHER_MAX_TEMP = 3;
-    public static final int COL_WEATHER_MIN_TEMP = 4;
-    public static final int COL_WEATHER_HUMIDITY = 5;
-    public static final int COL_WEATHER_PRESSURE = 6;
-    public static final int COL_WEATHER_WIND_SPEED = 7;
-    public static final int COL_WEATHER_DEGREES = 8;
-    public static final int COL_WEATHER_CONDITION_ID = 9;
-
     private ImageView mIconView;
     private TextView mDateView;
     private TextView mDescriptionView;
@@ -153,8 +128,18 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
 
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
-        getLoaderManager().initLoader(DETAIL_LOADER, null, this);
         super.onActivityCreated(savedInstanceState);
+        mRepository = ForecastRepository.getInstance(getActivity());
+        mRepository.addListener(this);
+        showForecast();
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (mRepository != null) {
+            mRepository.removeListener(this);
+        }
     }
 
     void onLocationChanged( String newLocation ) {
@@ -164,105 +149,137 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
             long date = WeatherContract.WeatherEntry.getDateFromUri(uri);
             Uri updatedUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(newLocation, date);
             mUri = updatedUri;
-            getLoaderManager().restartLoader(DETAIL_LOADER, null, this);
+            showForecast();
         }
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        if ( null != mUri ) {
-            // Now create and return a CursorLoader that will take care of
-            // creating a Cursor for the data being displayed.
-            return new CursorLoader(
-                    getActivity(),
-                    mUri,
-                    DETAIL_COLUMNS,
-                    null,
-                    null,
-                    null
-            );
+    public void onForecastChanged(ForecastSnapshot forecast) {
+        if (getView() != null) {
+            showForecast();
         }
-        ViewParent vp = getView().getParent();
-        if ( vp instanceof CardView ) {
-            ((View)vp).setVisibility(View.INVISIBLE);
+    }
+
+    /**
+     * Shows the day straight away from the forecast the list already loaded, if there is one for
+     * our location.  Our own loader runs regardless, since the list's loader is stopped while
+     * the detail activity is in front: it picks up syncs and settings changes, and fills in days
+     * the list's forecast doesn't have.  What it loads is shared with everyone else.
+     */
+    private void showForecast() {
+        if (null == mUri) {
+            bindDay(null, -1);
+            return;
         }
-        return null;
+        String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(mUri);
+        if (!locationSetting.equals(mLoaderLocation)) {
+            mLoaderLocation = locationSetting;
+            mLoadedForecast = null;
+            getLoaderManager().restartLoader(DETAIL_LOADER, null, this);
+        }
+        bindForecast();
+    }
+
+    private void bindForecast() {
+        ForecastSnapshot forecast = mRepository.getForecast(mLoaderLocation);
+        if (forecast == null) {
+            // Bound once our loader has loaded it
+            return;
+        }
+        int position =
+                forecast.indexOfDate(WeatherContract.WeatherEntry.getDateFromUri(mUri));
+        // A day missing from someone else's forecast may still be in the one we load, so the
+        // day is only shown as missing once our own forecast doesn't have it either
+        if (position != -1 || forecast == mLoadedForecast) {
+            bindDay(forecast, position);
+        }
+    }
+
+    @Override
+    public Loader<ForecastSnapshot> onCreateLoader(int id, Bundle args) {
+        // Diff against what the repository already holds, so an unchanged forecast is reused
+        // rather than rebuilt and written to the cache again
+        return new ForecastLoader(getActivity(), mLoaderLocation,
+                mRepository.getForecast(mLoaderLocation));
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        if (data != null && data.moveToFirst()) {
-            ViewParent vp = getView().getParent();
+    public void onLoadFinished(Loader<ForecastSnapshot> loader, ForecastSnapshot data) {
+        mLoadedForecast = data;
+        if (data == mRepository.getForecast()) {
+            // The repository only tells its listeners about a new forecast
+            bindForecast();
+        } else {
+            // Comes back to us through onForecastChanged
+            mRepository.setForecast(data);
+        }
+    }
+
+    @Override
+    public void onLoaderReset(Loader<ForecastSnapshot> loader) { }
+
+    private void bindDay(ForecastSnapshot forecast, int position) {
+        ViewParent vp = getView().getParent();
+        if (position == -1) {
+            if ( vp instanceof CardView ) {
+                ((View)vp).setVisibility(View.INVISIBLE);
+            }
+        } else {
             if ( vp instanceof CardView ) {
                 ((View)vp).setVisibility(View.VISIBLE);
             }
 
-            // Read weather condition ID from cursor
-            int weatherId = data.getInt(COL_WEATHER_CONDITION_ID);
+            ForecastItem item = forecast.get(position);
+            ForecastDetail detail = mRepository.getDetail(item);
 
             if ( Utility.usingLocalGraphics(getActivity()) ) {
-                mIconView.setImageResource(Utility.getArtResourceForWeatherCondition(weatherId));
+                mIconView.setImageResource(item.mArtResourceId);
             } else {
-                // Use weather art image
+                // Use weather art image, decoded at the largest size the icon is shown at
+                int todayIconSize = getResources().getDimensionPixelSize(R.dimen.today_icon);
                 Glide.with(this)
-                        .load(Utility.getArtUrlForWeatherCondition(getActivity(), weatherId))
-                        .error(Utility.getArtResourceForWeatherCondition(weatherId))
+                        .load(item.mArtUrl)
+                        .diskCacheStrategy(DiskCacheStrategy.ALL)
+                        .error(item.mArtResourceId)
+                        .override(todayIconSize, todayIconSize)
                         .crossFade()
                         .into(mIconView);
             }
 
-            // Read date from cursor and update views for day of week and date
-            long date = data.getLong(COL_WEATHER_DATE);
-            String dateText = Utility.getFullFriendlyDayString(getActivity(),date);
-            mDateView.setText(dateText);
+            mDateView.setText(detail.mFullDayText);
 
-            // Get description from weather condition ID
-            String description = Utility.getStringForWeatherCondition(getActivity(), weatherId);
-            mDescriptionView.setText(description);
-            mDescriptionView.setContentDescription(getString(R.string.a11y_forecast, description));
+            mDescriptionView.setText(item.mDescription);
+            mDescriptionView.setContentDescription(item.mDescriptionA11y);
 
             // For accessibility, add a content description to the icon field. Because the ImageView
             // is independently focusable, it's better to have a description of the image. Using
             // null is appropriate when the image is purely decorative or when the image already
             // has text describing it in the same UI component.
-            mIconView.setContentDescription(getString(R.string.a11y_forecast_icon, description));
-
-            // Read high temperature from cursor and update view
-            boolean isMetric = Utility.isMetric(getActivity());
-
-            double high = data.getDouble(COL_WEATHER_MAX_TEMP);
-            String highString = Utility.formatTemperature(getActivity(), high);
-            mHighTempView.setText(highString);
-            mHighTempView.setContentDescription(getString(R.string.a11y_high_temp, highString));
-
-            // Read low temperature from cursor and update view
-            double low = data.getDouble(COL_WEATHER_MIN_TEMP);
-            String lowString = Utility.formatTemperature(getActivity(), low);
-            mLowTempView.setText(lowString);
-            mLowTempView.setContentDescription(getString(R.string.a11y_low_temp, lowString));
-
-            // Read humidity from cursor and update view
-            float humidity = data.getFloat(COL_WEATHER_HUMIDITY);
-            mHumidityView.setText(getActivity().getString(R.string.format_humidity, humidity));
-            mHumidityView.setContentDescription(getString(R.string.a11y_humidity, mHumidityView.getText()));
-            mHumidityLabelView.setContentDescription(mHumidityView.getContentDescription());
-
-            // Read wind speed and direction from cursor and update view
-            float windSpeedStr = data.getFloat(COL_WEATHER_WIND_SPEED);
-            float windDirStr = data.getFloat(COL_WEATHER_DEGREES);
-            mWindView.setText(Utility.getFormattedWind(getActivity(), windSpeedStr, windDirStr));
-            mWindView.setContentDescription(getString(R.string.a11y_wind, mWindView.getText()));
-            mWindLabelView.setContentDescription(mWindView.getContentDescription());
-
-            // Read pressure from cursor and update view
-            float pressure = data.getFloat(COL_WEATHER_PRESSURE);
-            mPressureView.setText(getString(R.string.format_pressure, pressure));
-            mPressureView.setContentDescription(getString(R.string.a11y_pressure, mPressureView.getText()));
-            mPressureLabelView.setContentDescription(mPressureView.getContentDescription());
+            mIconView.setContentDescription(detail.mIconA11y);
+
+            mHighTempView.setText(item.mHighText);
+            mHighTempView.setContentDescription(item.mHighA11y);
+
+            mLowTempView.setText(item.mLowText);
+            mLowTempView.setContentDescription(item.mLowA11y);
+
+            mHumidityView.setText(detail.mHumidityText);
+            mHumidityView.setContentDescription(detail.mHumidityA11y);
+            mHumidityLabelView.setContentDescription(detail.mHumidityA11y);
+
+            mWindView.setText(detail.mWindText);
+            mWindView.setContentDescription(detail.mWindA11y);
+            mWindLabelView.setContentDescription(detail.mWindA11y);
+
+            mPressureView.setText(detail.mPressureText);
+            mPressureView.setContentDescription(detail.mPressureA11y);
+            mPressureLabelView.setContentDescription(detail.mPressureA11y);
 
             // We still need this for the share intent
-            mForecast = String.format("%s - %s - %s/%s", dateText, description, high, low);
+            mForecast = detail.mShareText;
 
+            // The neighbouring days are the ones most likely to be shown next
+            mRepository.prefetchAdjacentDetails(position);
         }
         AppCompatActivity activity = (AppCompatActivity)getActivity();
         Toolbar toolbarView = (Toolbar) getView().findViewById(R.id.toolbar);
@@ -286,7 +303,4 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
             }
         }
     }
-
-    @Override
-    public void onLoaderReset(Loader<Cursor> loader) { }
-}
\ No newline at end of file
+}
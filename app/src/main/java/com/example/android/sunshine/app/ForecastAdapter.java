@@ -16,9 +16,10 @@
 package com.example.android.sunshine.app;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
@@ -30,26 +31,35 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.bumptech.glide.Glide;
-import com.example.android.sunshine.app.data.WeatherContract;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 
 /**
  * {@link ForecastAdapter} exposes a list of weather forecasts
- * from a {@link android.database.Cursor} to a {@link android.support.v7.widget.RecyclerView}.
+ * from a {@link ForecastSnapshot} to a {@link android.support.v7.widget.RecyclerView}.
  */
 public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder> {
 
     private static final int VIEW_TYPE_TODAY = 0;
     private static final int VIEW_TYPE_FUTURE_DAY = 1;
 
+    // The today layout is only ever on screen once, but needs a spare while it changes places.
+    private static final int MAX_RECYCLED_TODAY_VIEWS = 2;
+    // Future day views inflated ahead of the first fling, beyond the ones on screen
+    private static final int PREFETCHED_FUTURE_DAY_VIEWS = 4;
+
     // Flag to determine if we want to use a separate view for "today".
     private boolean mUseTodayLayout = true;
 
-    private Cursor mCursor;
+    private ForecastSnapshot mForecast;
     final private Context mContext;
     final private ForecastAdapterOnClickHandler mClickHandler;
     final private View mEmptyView;
     final private ItemChoiceManager mICM;
 
+    // Art pack images are decoded straight to the size they are shown at, for this density
+    final private int mListIconSize;
+    final private int mTodayIconSize;
+
     /**
      * Cache of the children views for a forecast list item.
      */
@@ -73,9 +83,7 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         @Override
         public void onClick(View v) {
             int adapterPosition = getAdapterPosition();
-            mCursor.moveToPosition(adapterPosition);
-            int dateColumnIndex = mCursor.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
-            mClickHandler.onClick(mCursor.getLong(dateColumnIndex), this);
+            mClickHandler.onClick(mForecast.get(adapterPosition).mDate, this);
             mICM.onClick(this);
         }
     }
@@ -90,6 +98,9 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         mEmptyView = emptyView;
         mICM = new ItemChoiceManager(this);
         mICM.setChoiceMode(choiceMode);
+        mListIconSize = context.getResources().getDimensionPixelSize(R.dimen.list_icon);
+        mTodayIconSize = context.getResources().getDimensionPixelSize(R.dimen.today_icon);
+        setHasStableIds(true);
     }
 
     /*
@@ -122,65 +133,95 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         }
     }
 
+    /**
+     * Sizes the RecyclerView's pool of views for reuse for both view types, and once the list
+     * has been laid out, fills it with future day views while the UI thread is idle.  That way
+     * neither the first fling nor a full data refresh has to inflate rows.
+     *
+     * @param recyclerView The RecyclerView this adapter is set on
+     */
+    public void prefillViewPool(final RecyclerView recyclerView) {
+        final RecyclerView.RecycledViewPool pool = recyclerView.getRecycledViewPool();
+        pool.setMaxRecycledViews(VIEW_TYPE_TODAY, MAX_RECYCLED_TODAY_VIEWS);
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            private int mRemaining = -1;
+
+            @Override
+            public boolean queueIdle() {
+                if (recyclerView.getAdapter() != ForecastAdapter.this) {
+                    return false;
+                }
+                if (mRemaining == -1) {
+                    int visibleCount = recyclerView.getChildCount();
+                    if (visibleCount == 0) {
+                        // Not laid out with any rows yet, try again next time we're idle
+                        return true;
+                    }
+                    // A refresh puts every row on screen into the pool at once, so make room
+                    pool.setMaxRecycledViews(VIEW_TYPE_FUTURE_DAY,
+                            visibleCount + PREFETCHED_FUTURE_DAY_VIEWS);
+                    mRemaining = Math.min(PREFETCHED_FUTURE_DAY_VIEWS,
+                            getItemCount() - visibleCount);
+                }
+                // One view per idle pass, so input that arrives meanwhile isn't held up
+                if (mRemaining > 0) {
+                    pool.putRecycledView(createViewHolder(recyclerView, VIEW_TYPE_FUTURE_DAY));
+                    mRemaining--;
+                }
+                return mRemaining > 0;
+            }
+        });
+    }
+
     @Override
     public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position) {
-        mCursor.moveToPosition(position);
-        int weatherId = mCursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+        ForecastItem item = mForecast.get(position);
         int defaultImage;
-        boolean useLongToday;
+        int iconSize;
+        String dayText;
 
         switch (getItemViewType(position)) {
             case VIEW_TYPE_TODAY:
-                defaultImage = Utility.getArtResourceForWeatherCondition(weatherId);
-                useLongToday = true;
+                defaultImage = item.mArtResourceId;
+                iconSize = mTodayIconSize;
+                dayText = item.mLongDayText;
                 break;
             default:
-                defaultImage = Utility.getIconResourceForWeatherCondition(weatherId);
-                useLongToday = false;
+                defaultImage = item.mIconResourceId;
+                iconSize = mListIconSize;
+                dayText = item.mDayText;
         }
 
-        if ( Utility.usingLocalGraphics(mContext) ) {
+        if ( item.mArtUrl == null ) {
             forecastAdapterViewHolder.mIconView.setImageResource(defaultImage);
         } else {
             Glide.with(mContext)
-                    .load(Utility.getArtUrlForWeatherCondition(mContext, weatherId))
+                    .load(item.mArtUrl)
+                    .diskCacheStrategy(DiskCacheStrategy.ALL)
                     .error(defaultImage)
+                    .override(iconSize, iconSize)
                     .crossFade()
                     .into(forecastAdapterViewHolder.mIconView);
         }
 
         // this enables better animations. even if we lose state due to a device rotation,
         // the animator can use this to re-find the original view
-        ViewCompat.setTransitionName(forecastAdapterViewHolder.mIconView, "iconView" + position);
-
-        // Read date from cursor
-        long dateInMillis = mCursor.getLong(ForecastFragment.COL_WEATHER_DATE);
-
-        // Find TextView and set formatted date on it
-        forecastAdapterViewHolder.mDateView.setText(Utility.getFriendlyDayString(mContext, dateInMillis, useLongToday));
+        ViewCompat.setTransitionName(forecastAdapterViewHolder.mIconView, item.mTransitionName);
 
-        // Read weather forecast from cursor
-        String description = Utility.getStringForWeatherCondition(mContext, weatherId);
+        forecastAdapterViewHolder.mDateView.setText(dayText);
 
-        // Find TextView and set weather forecast on it
-        forecastAdapterViewHolder.mDescriptionView.setText(description);
-        forecastAdapterViewHolder.mDescriptionView.setContentDescription(mContext.getString(R.string.a11y_forecast, description));
+        forecastAdapterViewHolder.mDescriptionView.setText(item.mDescription);
+        forecastAdapterViewHolder.mDescriptionView.setContentDescription(item.mDescriptionA11y);
 
         // For accessibility, we don't want a content description for the icon field
         // because the information is repeated in the description view and the icon
         // is not individually selectable
 
-        // Read high temperature from cursor
-        double high = mCursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP);
-        String highString = Utility.formatTemperature(mContext, high);
-        forecastAdapterViewHolder.mHighTempView.setText(highString);
-        forecastAdapterViewHolder.mHighTempView.setContentDescription(mContext.getString(R.string.a11y_high_temp, highString));
+        forecastAdapterViewHolder.mHighTempView.setText(item.mHighText);
+        forecastAdapterViewHolder.mHighTempView.setContentDescription(item.mHighA11y);
 
-        // Read low temperature from cursor
-        double low = mCursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP);
-        String lowString = Utility.formatTemperature(mContext, low);
-        forecastAdapterViewHolder.mLowTempView.setText(lowString);
-        forecastAdapterViewHolder.mLowTempView.setContentDescription(mContext.getString(R.string.a11y_low_temp, lowString));
+        forecastAdapterViewHolder.mLowTempView.setText(item.mLowText);
+        forecastAdapterViewHolder.mLowTempView.setContentDescription(item.mLowA11y);
 
         mICM.onBindViewHolder(forecastAdapterViewHolder, position);
     }
@@ -208,18 +249,38 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
 
     @Override
     public int getItemCount() {
-        if ( null == mCursor ) return 0;
-        return mCursor.getCount();
+        if ( null == mForecast ) return 0;
+        return mForecast.size();
     }
 
-    public void swapCursor(Cursor newCursor) {
-        mCursor = newCursor;
-        notifyDataSetChanged();
+    @Override
+    public long getItemId(int position) {
+        // Rows are deleted and inserted again on every sync, so their _ID changes; a day's date
+        // doesn't, and it's also what ForecastDiff matches items on
+        return mForecast.get(position).mDate;
+    }
+
+    public void swapForecast(ForecastSnapshot newForecast) {
+        ForecastSnapshot oldForecast = mForecast;
+        mForecast = newForecast;
+
+        ForecastDiff diff = null == newForecast ? null : newForecast.getDiff();
+        if ( null != diff && diff.appliesTo(oldForecast) ) {
+            diff.dispatchUpdatesTo(this);
+            // The first row has its own layout, so when a different day moves in or out of it
+            // both it and its neighbour need to be rebound with the right view type.
+            if ( mUseTodayLayout && getItemCount() > 0 && oldForecast.size() > 0
+                    && oldForecast.get(0).mDate != newForecast.get(0).mDate ) {
+                notifyItemRangeChanged(0, Math.min(2, getItemCount()));
+            }
+        } else {
+            notifyDataSetChanged();
+        }
         mEmptyView.setVisibility(getItemCount() == 0 ? View.VISIBLE : View.GONE);
     }
 
-    public Cursor getCursor() {
-        return mCursor;
+    public ForecastSnapshot getForecast() {
+        return mForecast;
     }
 
     public void selectView(RecyclerView.ViewHolder viewHolder) {
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.support.v4.util.AtomicFile;
+import android.text.format.Time;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Keeps the last displayed forecast, already formatted, in a small file, so that on a cold
+ * start the forecast list can be shown before the database has even been opened.
+ *
+ * The cached forecast is only used on the day it was written, in the locale it was formatted
+ * for, since its "Today" and "Tomorrow" labels would be wrong otherwise.  Whatever it gets
+ * wrong beyond that is corrected as soon as {@link ForecastLoader} delivers.
+ */
+public class ForecastCache {
+    private static final String LOG_TAG = ForecastCache.class.getSimpleName();
+
+    private static final String FILE_NAME = "forecast_snapshot";
+
+    // Increase this whenever the layout of the file changes
+    private static final int FILE_VERSION = 2;
+
+    private ForecastCache() {
+    }
+
+    /**
+     * Reads the cached forecast.  The file is small, so this is meant to be called on the UI
+     * thread while the forecast list is created.
+     *
+     * @param context Context used to find the file
+     * @param locationSetting The location the forecast is wanted for
+     * @return the cached forecast, or null if there is none that is still usable
+     */
+    public static ForecastSnapshot read(Context context, String locationSetting) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(getFile(context).openRead()));
+            if (in.readInt() != FILE_VERSION
+                    || in.readInt() != getJulianDay()
+                    || !in.readUTF().equals(Locale.getDefault().toString())) {
+                return null;
+            }
+            ForecastSnapshot forecast = ForecastSnapshot.readFrom(in);
+            return forecast.mLocationSetting.equals(locationSetting) ? forecast : null;
+        } catch (FileNotFoundException e) {
+            // Nothing has been cached yet
+            return null;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error reading cached forecast", e);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Error closing cached forecast", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the cached forecast.  This should not be called from the UI thread.
+     *
+     * @param context Context used to find the file
+     * @param forecast The forecast being displayed
+     */
+    public static void write(Context context, ForecastSnapshot forecast) {
+        AtomicFile file = getFile(context);
+        FileOutputStream fileOut = null;
+        try {
+            fileOut = file.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(FILE_VERSION);
+            out.writeInt(getJulianDay());
+            out.writeUTF(Locale.getDefault().toString());
+            forecast.writeTo(out);
+            out.flush();
+            file.finishWrite(fileOut);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error caching forecast", e);
+            if (fileOut != null) {
+                file.failWrite(fileOut);
+            }
+        }
+    }
+
+    /**
+     * Removes the cached forecast, so that the next cold start waits for the loader again.
+     */
+    public static void delete(Context context) {
+        getFile(context).delete();
+    }
+
+    private static AtomicFile getFile(Context context) {
+        return new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    private static int getJulianDay() {
+        Time time = new Time();
+        time.setToNow();
+        return Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+    }
+}
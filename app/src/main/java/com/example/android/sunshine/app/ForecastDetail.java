@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+
+/**
+ * Immutable, fully formatted strings that only the detail view shows for a
+ * {@link ForecastItem}.
+ */
+public class ForecastDetail {
+    public final ForecastItem mItem;
+
+    // "Wednesday, June 24"
+    public final String mFullDayText;
+    public final String mIconA11y;
+
+    public final String mHumidityText;
+    public final String mHumidityA11y;
+    public final String mWindText;
+    public final String mWindA11y;
+    public final String mPressureText;
+    public final String mPressureA11y;
+
+    // What gets shared from the detail view
+    public final String mShareText;
+
+    /**
+     * @param context Context to use for resource localization
+     * @param item The day to format the details of
+     */
+    ForecastDetail(Context context, ForecastItem item) {
+        mItem = item;
+
+        mFullDayText = Utility.getFullFriendlyDayString(context, item.mDate);
+        mIconA11y = context.getString(R.string.a11y_forecast_icon, item.mDescription);
+
+        mHumidityText = context.getString(R.string.format_humidity, item.mHumidity);
+        mHumidityA11y = context.getString(R.string.a11y_humidity, mHumidityText);
+
+        mWindText = Utility.getFormattedWind(context, item.mWindSpeed, item.mWindDirection);
+        mWindA11y = context.getString(R.string.a11y_wind, mWindText);
+
+        mPressureText = context.getString(R.string.format_pressure, item.mPressure);
+        mPressureA11y = context.getString(R.string.a11y_pressure, mPressureText);
+
+        mShareText = String.format("%s - %s - %s/%s",
+                mFullDayText, item.mDescription, item.mHigh, item.mLow);
+    }
+}
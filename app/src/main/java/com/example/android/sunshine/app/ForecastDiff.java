@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.support.v7.widget.RecyclerView;
+
+import java.util.List;
+
+/**
+ * The minimal set of item range updates that turns one {@link ForecastSnapshot} into the next.
+ *
+ * Both forecasts are sorted by date and hold at most one row per day, so rows are matched by
+ * date in a single merge pass.  The weather _ID can't be used as the key, since the provider
+ * replaces every row it receives on each sync and so hands out new ids each time.
+ */
+public class ForecastDiff {
+    private static final int OP_INSERT = 0;
+    private static final int OP_REMOVE = 1;
+    private static final int OP_CHANGE = 2;
+
+    // Version of the snapshot this diff starts from
+    private final long mBaseVersion;
+
+    // (operation, position, count) triples, in increasing order of position in the old list
+    private final int[] mOps;
+    private int mOpCount;
+
+    private ForecastDiff(long baseVersion, int maxOps) {
+        mBaseVersion = baseVersion;
+        mOps = new int[maxOps * 3];
+    }
+
+    /**
+     * Compares two forecasts.  This walks every row, so it should not be called from the UI
+     * thread.
+     *
+     * @param oldForecast The forecast currently displayed
+     * @param newItems The rows of the forecast replacing it
+     * @return the updates to dispatch
+     */
+    static ForecastDiff calculate(ForecastSnapshot oldForecast, List<ForecastItem> newItems) {
+        int oldSize = oldForecast.size();
+        int newSize = newItems.size();
+        ForecastDiff diff = new ForecastDiff(oldForecast.mVersion, oldSize + newSize);
+
+        int oldPosition = 0;
+        int newPosition = 0;
+        while (oldPosition < oldSize || newPosition < newSize) {
+            if (newPosition == newSize) {
+                diff.add(OP_REMOVE, oldPosition++);
+            } else if (oldPosition == oldSize) {
+                diff.add(OP_INSERT, oldPosition);
+                newPosition++;
+            } else {
+                ForecastItem oldItem = oldForecast.get(oldPosition);
+                ForecastItem newItem = newItems.get(newPosition);
+                if (oldItem.mDate == newItem.mDate) {
+                    if (!oldItem.hasSameContents(newItem)) {
+                        diff.add(OP_CHANGE, oldPosition);
+                    }
+                    oldPosition++;
+                    newPosition++;
+                } else if (newItem.mDate < oldItem.mDate) {
+                    diff.add(OP_INSERT, oldPosition);
+                    newPosition++;
+                } else {
+                    diff.add(OP_REMOVE, oldPosition++);
+                }
+            }
+        }
+        return diff;
+    }
+
+    private void add(int operation, int position) {
+        if (mOpCount > 0) {
+            int last = (mOpCount - 1) * 3;
+            if (mOps[last] == operation) {
+                // Inserts pile up in front of the same old row, while removes and changes
+                // cover consecutive old rows.
+                int end = operation == OP_INSERT ? mOps[last + 1] : mOps[last + 1] + mOps[last + 2];
+                if (end == position) {
+                    mOps[last + 2]++;
+                    return;
+                }
+            }
+        }
+        int next = mOpCount * 3;
+        mOps[next] = operation;
+        mOps[next + 1] = position;
+        mOps[next + 2] = 1;
+        mOpCount++;
+    }
+
+    /**
+     * @param forecast The forecast an adapter is currently displaying
+     * @return true if this diff was calculated from that forecast
+     */
+    public boolean appliesTo(ForecastSnapshot forecast) {
+        return forecast != null && forecast.mVersion == mBaseVersion;
+    }
+
+    public boolean isEmpty() {
+        return mOpCount == 0;
+    }
+
+    /**
+     * Notifies the adapter of each update.  Updates are dispatched from the end of the list
+     * backwards, so that the old positions they were recorded with stay valid.
+     */
+    public void dispatchUpdatesTo(RecyclerView.Adapter adapter) {
+        for (int i = mOpCount - 1; i >= 0; i--) {
+            int operation = mOps[i * 3];
+            int position = mOps[i * 3 + 1];
+            int count = mOps[i * 3 + 2];
+            switch (operation) {
+                case OP_INSERT:
+                    adapter.notifyItemRangeInserted(position, count);
+                    break;
+                case OP_REMOVE:
+                    adapter.notifyItemRangeRemoved(position, count);
+                    break;
+                default:
+                    adapter.notifyItemRangeChanged(position, count);
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.text.TextUtils;
+
+import com.example.android.sunshine.shared.WeatherConditions;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Immutable, fully formatted contents of one row of the forecast list.
+ *
+ * Items are built by {@link ForecastLoader} on a background thread, so binding a row in
+ * {@link ForecastAdapter} is only a matter of copying these fields into views.  The values only
+ * the detail view shows are kept unformatted, and formatted on demand into a
+ * {@link ForecastDetail}.
+ */
+public class ForecastItem {
+    public final long mId;
+    public final long mDate;
+    // Transition name of the row's icon, so the detail view can find it again
+    public final String mTransitionName;
+    public final int mWeatherId;
+
+    public final int mIconResourceId;
+    public final int mArtResourceId;
+    // Remote art for the selected art pack, or null when Sunshine's own graphics are in use
+    public final String mArtUrl;
+
+    // "Wednesday" for the list, and "Today, June 24" for the large today item
+    public final String mDayText;
+    public final String mLongDayText;
+
+    public final String mDescription;
+    public final String mDescriptionA11y;
+    public final String mHighText;
+    public final String mHighA11y;
+    public final String mLowText;
+    public final String mLowA11y;
+
+    // In Celsius, as stored
+    public final double mHigh;
+    public final double mLow;
+    public final float mHumidity;
+    public final float mPressure;
+    public final float mWindSpeed;
+    public final float mWindDirection;
+
+    /**
+     * Formats the row the cursor is currently positioned on.  This reads preferences and
+     * resources, so it should not be called from the UI thread.
+     *
+     * @param context Context to use for resource localization
+     * @param cursor Cursor over {@link ForecastFragment#FORECAST_COLUMNS}
+     * @param useLocalGraphics whether Sunshine's own graphics are in use
+     */
+    ForecastItem(Context context, Cursor cursor, boolean useLocalGraphics) {
+        mId = cursor.getLong(ForecastFragment.COL_WEATHER_ID);
+        mDate = cursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+        mTransitionName = getTransitionName(mDate);
+        mWeatherId = cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+
+        mIconResourceId = Utility.getIconResourceForWeatherCondition(mWeatherId);
+        mArtResourceId = Utility.getArtResourceForWeatherCondition(mWeatherId);
+        mArtUrl = useLocalGraphics
+                ? null : Utility.getArtUrlForWeatherCondition(context, mWeatherId);
+
+        mDayText = Utility.getFriendlyDayString(context, mDate, false);
+        mLongDayText = Utility.getFriendlyDayString(context, mDate, true);
+
+        mDescription = Utility.getStringForWeatherCondition(context, mWeatherId);
+        mDescriptionA11y = context.getString(R.string.a11y_forecast, mDescription);
+
+        mHigh = cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP);
+        mHighText = Utility.formatTemperature(context, mHigh);
+        mHighA11y = context.getString(R.string.a11y_high_temp, mHighText);
+
+        mLow = cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP);
+        mLowText = Utility.formatTemperature(context, mLow);
+        mLowA11y = context.getString(R.string.a11y_low_temp, mLowText);
+
+        mHumidity = cursor.getFloat(ForecastFragment.COL_WEATHER_HUMIDITY);
+        mPressure = cursor.getFloat(ForecastFragment.COL_WEATHER_PRESSURE);
+        mWindSpeed = cursor.getFloat(ForecastFragment.COL_WEATHER_WIND_SPEED);
+        mWindDirection = cursor.getFloat(ForecastFragment.COL_WEATHER_DEGREES);
+    }
+
+    /**
+     * Reads an item written by {@link #writeTo(DataOutputStream)}.  Resource ids aren't stable
+     * across builds, so they are looked up again from the weather condition.
+     */
+    ForecastItem(DataInputStream in) throws IOException {
+        mId = in.readLong();
+        mDate = in.readLong();
+        mTransitionName = getTransitionName(mDate);
+        mWeatherId = in.readInt();
+
+        mIconResourceId = WeatherConditions.getIconResource(mWeatherId);
+        mArtResourceId = WeatherConditions.getArtResource(mWeatherId);
+        mArtUrl = in.readBoolean() ? in.readUTF() : null;
+
+        mDayText = in.readUTF();
+        mLongDayText = in.readUTF();
+        mDescription = in.readUTF();
+        mDescriptionA11y = in.readUTF();
+        mHighText = in.readUTF();
+        mHighA11y = in.readUTF();
+        mLowText = in.readUTF();
+        mLowA11y = in.readUTF();
+
+        mHigh = in.readDouble();
+        mLow = in.readDouble();
+        mHumidity = in.readFloat();
+        mPressure = in.readFloat();
+        mWindSpeed = in.readFloat();
+        mWindDirection = in.readFloat();
+    }
+
+    // Keyed by date rather than position, since rows move without being rebound
+    private static String getTransitionName(long date) {
+        return "iconView" + date;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeLong(mId);
+        out.writeLong(mDate);
+        out.writeInt(mWeatherId);
+
+        out.writeBoolean(mArtUrl != null);
+        if (mArtUrl != null) {
+            out.writeUTF(mArtUrl);
+        }
+
+        out.writeUTF(mDayText);
+        out.writeUTF(mLongDayText);
+        out.writeUTF(mDescription);
+        out.writeUTF(mDescriptionA11y);
+        out.writeUTF(mHighText);
+        out.writeUTF(mHighA11y);
+        out.writeUTF(mLowText);
+        out.writeUTF(mLowA11y);
+
+        out.writeDouble(mHigh);
+        out.writeDouble(mLow);
+        out.writeFloat(mHumidity);
+        out.writeFloat(mPressure);
+        out.writeFloat(mWindSpeed);
+        out.writeFloat(mWindDirection);
+    }
+
+    /**
+     * @return true if the other item would display exactly like this one, in the list and in the
+     * detail view.  The weather _ID is not compared, since it changes whenever a sync rewrites
+     * the row.
+     */
+    public boolean hasSameContents(ForecastItem other) {
+        return mDate == other.mDate
+                && mWeatherId == other.mWeatherId
+                && mIconResourceId == other.mIconResourceId
+                && mArtResourceId == other.mArtResourceId
+                && TextUtils.equals(mArtUrl, other.mArtUrl)
+                && TextUtils.equals(mDayText, other.mDayText)
+                && TextUtils.equals(mLongDayText, other.mLongDayText)
+                && TextUtils.equals(mDescription, other.mDescription)
+                && TextUtils.equals(mDescriptionA11y, other.mDescriptionA11y)
+                && TextUtils.equals(mHighText, other.mHighText)
+                && TextUtils.equals(mHighA11y, other.mHighA11y)
+                && TextUtils.equals(mLowText, other.mLowText)
+                && TextUtils.equals(mLowA11y, other.mLowA11y)
+                && mHigh == other.mHigh
+                && mLow == other.mLow
+                && mHumidity == other.mHumidity
+                && mPressure == other.mPressure
+                && mWindSpeed == other.mWindSpeed
+                && mWindDirection == other.mWindDirection;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.v4.content.AsyncTaskLoader;
+import android.support.v4.os.TraceCompat;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+/**
+ * Loads the forecast for a location and formats every row on the loader's background thread,
+ * delivering an immutable {@link ForecastSnapshot}.  Like a CursorLoader, it reloads whenever
+ * the weather data changes, which includes unit and art pack changes in the settings.
+ *
+ * Each reload is also diffed against the previously displayed forecast in the background, so
+ * the adapter only has to dispatch the resulting item updates.  Whenever that changes anything,
+ * the new forecast is written to the {@link ForecastCache} for the next cold start.
+ */
+public class ForecastLoader extends AsyncTaskLoader<ForecastSnapshot> {
+    private final String mLocationSetting;
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+    private boolean mObserverRegistered;
+    private ForecastSnapshot mForecast;
+    // Written on the UI thread when delivered, read on the loader thread for diffing
+    private volatile ForecastSnapshot mPrevious;
+
+    /**
+     * @param context Context used to query and format the forecast
+     * @param locationSetting The location to load the forecast for
+     * @param displayedForecast The forecast already on screen, such as one read from the
+     *                          {@link ForecastCache}, to diff the first load against.  May be null.
+     */
+    public ForecastLoader(Context context, String locationSetting,
+                          ForecastSnapshot displayedForecast) {
+        super(context);
+        mLocationSetting = locationSetting;
+        mPrevious = displayedForecast;
+    }
+
+    @Override
+    public ForecastSnapshot loadInBackground() {
+        TraceCompat.beginSection("ForecastLoader.loadInBackground");
+        Cursor cursor = null;
+        try {
+            // To only show current and future dates, filter the query to return weather only for
+            // dates after or including today.
+            Uri weatherForLocationUri =
+                    WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                            mLocationSetting, System.currentTimeMillis());
+
+            // Sort order:  Ascending, by date.
+            String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
+
+            cursor = getContext().getContentResolver().query(weatherForLocationUri,
+                    ForecastFragment.FORECAST_COLUMNS, null, null, sortOrder);
+            ForecastSnapshot forecast =
+                    ForecastSnapshot.fromCursor(getContext(), mLocationSetting, cursor, mPrevious);
+            ForecastDiff diff = forecast.getDiff();
+            if (diff == null || !diff.isEmpty()) {
+                ForecastCache.write(getContext(), forecast);
+            }
+            return forecast;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            TraceCompat.endSection();
+        }
+    }
+
+    @Override
+    public void deliverResult(ForecastSnapshot forecast) {
+        if (isReset()) {
+            return;
+        }
+        mForecast = forecast;
+        mPrevious = forecast;
+        if (isStarted()) {
+            super.deliverResult(forecast);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserverRegistered) {
+            getContext().getContentResolver().registerContentObserver(
+                    WeatherContract.WeatherEntry.CONTENT_URI, true, mObserver);
+            mObserverRegistered = true;
+        }
+        if (mForecast != null) {
+            deliverResult(mForecast);
+        }
+        if (takeContentChanged() || mForecast == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        if (mObserverRegistered) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserverRegistered = false;
+        }
+        mForecast = null;
+        mPrevious = null;
+    }
+}
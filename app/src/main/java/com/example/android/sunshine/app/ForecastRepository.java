@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The forecast currently on screen, shared by the forecast list and the detail view, so that
+ * opening a day never has to query the database for a row the list already holds.
+ *
+ * Whoever loads a forecast publishes it here, and everyone showing it observes it.  The
+ * forecast and the listeners must only be used from the UI thread.
+ */
+public class ForecastRepository {
+    public interface Listener {
+        void onForecastChanged(ForecastSnapshot forecast);
+    }
+
+    private static ForecastRepository sInstance;
+
+    private final Context mContext;
+    private final List<Listener> mListeners = new ArrayList<Listener>();
+    private ForecastSnapshot mForecast;
+
+    // Details formatted so far for the items of mForecast, guarded by itself
+    private final Map<ForecastItem, ForecastDetail> mDetails =
+            new HashMap<ForecastItem, ForecastDetail>();
+    private ExecutorService mPrefetchExecutor;
+
+    private ForecastRepository(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    public static ForecastRepository getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ForecastRepository(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return the forecast currently shown, or null if none has been loaded yet
+     */
+    public ForecastSnapshot getForecast() {
+        return mForecast;
+    }
+
+    /**
+     * @param locationSetting The location the forecast is wanted for
+     * @return the forecast currently shown, if it is for that location, or null otherwise
+     */
+    public ForecastSnapshot getForecast(String locationSetting) {
+        if (mForecast != null && mForecast.mLocationSetting.equals(locationSetting)) {
+            return mForecast;
+        }
+        return null;
+    }
+
+    public void setForecast(ForecastSnapshot forecast) {
+        if (forecast == mForecast) {
+            return;
+        }
+        mForecast = forecast;
+        synchronized (mDetails) {
+            mDetails.clear();
+        }
+        for (int i = mListeners.size() - 1; i >= 0; i--) {
+            mListeners.get(i).onForecastChanged(forecast);
+        }
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * @param item An item of the current forecast
+     * @return its formatted details, formatted now unless they were prefetched
+     */
+    public ForecastDetail getDetail(ForecastItem item) {
+        ForecastDetail detail;
+        synchronized (mDetails) {
+            detail = mDetails.get(item);
+        }
+        if (detail == null) {
+            detail = new ForecastDetail(mContext, item);
+            synchronized (mDetails) {
+                mDetails.put(item, detail);
+            }
+        }
+        return detail;
+    }
+
+    /**
+     * Formats the details of the days before and after a position in the background, so that
+     * moving on to either one doesn't have to.
+     *
+     * @param position Position of the day being shown in the current forecast
+     */
+    public void prefetchAdjacentDetails(int position) {
+        final ForecastSnapshot forecast = mForecast;
+        if (forecast == null) {
+            return;
+        }
+        final List<ForecastItem> items = new ArrayList<ForecastItem>(2);
+        if (position > 0) {
+            items.add(forecast.get(position - 1));
+        }
+        if (position + 1 < forecast.size()) {
+            items.add(forecast.get(position + 1));
+        }
+        if (items.isEmpty()) {
+            return;
+        }
+        if (mPrefetchExecutor == null) {
+            mPrefetchExecutor = Executors.newSingleThreadExecutor();
+        }
+        mPrefetchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (ForecastItem item : items) {
+                    ForecastDetail detail = new ForecastDetail(mContext, item);
+                    synchronized (mDetails) {
+                        // Drop it if the forecast was replaced in the meantime
+                        if (mForecast == forecast && !mDetails.containsKey(item)) {
+                            mDetails.put(item, detail);
+                        }
+                    }
+                }
+            }
+        });
+    }
+}
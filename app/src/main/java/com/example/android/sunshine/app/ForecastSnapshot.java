@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable forecast for one location, as displayed by the forecast list.
+ */
+public class ForecastSnapshot {
+    private static final AtomicLong sNextVersion = new AtomicLong();
+
+    // Identifies this snapshot to the diff of the snapshot that replaces it
+    final long mVersion = sNextVersion.incrementAndGet();
+
+    public final String mLocationSetting;
+    // Coordinates of the location, or null when there is no forecast for it yet
+    public final String mCoordLat;
+    public final String mCoordLong;
+    private final List<ForecastItem> mItems;
+    // Updates from the snapshot this one replaces, or null if it replaces nothing
+    private final ForecastDiff mDiff;
+
+    ForecastSnapshot(String locationSetting, String coordLat, String coordLong,
+                     List<ForecastItem> items, ForecastDiff diff) {
+        mLocationSetting = locationSetting;
+        mCoordLat = coordLat;
+        mCoordLong = coordLong;
+        mItems = Collections.unmodifiableList(items);
+        mDiff = diff;
+    }
+
+    /**
+     * Formats every row of the cursor.  This reads preferences and resources, so it should not
+     * be called from the UI thread.
+     *
+     * @param context Context to use for resource localization
+     * @param locationSetting The location the cursor was queried for
+     * @param cursor Cursor over {@link ForecastFragment#FORECAST_COLUMNS}, may be null
+     * @param previous The snapshot this one replaces, to diff against.  May be null.
+     * @return the formatted forecast
+     */
+    static ForecastSnapshot fromCursor(Context context, String locationSetting, Cursor cursor,
+                                       ForecastSnapshot previous) {
+        String coordLat = null;
+        String coordLong = null;
+        List<ForecastItem> items;
+        if (cursor == null || !cursor.moveToFirst()) {
+            items = Collections.emptyList();
+        } else {
+            coordLat = cursor.getString(ForecastFragment.COL_COORD_LAT);
+            coordLong = cursor.getString(ForecastFragment.COL_COORD_LONG);
+
+            boolean useLocalGraphics = Utility.usingLocalGraphics(context);
+            items = new ArrayList<ForecastItem>(cursor.getCount());
+            do {
+                items.add(new ForecastItem(context, cursor, useLocalGraphics));
+            } while (cursor.moveToNext());
+        }
+        ForecastDiff diff = previous == null ? null : ForecastDiff.calculate(previous, items);
+        return new ForecastSnapshot(locationSetting, coordLat, coordLong, items, diff);
+    }
+
+    /**
+     * Reads a forecast written by {@link #writeTo(DataOutputStream)}.
+     */
+    static ForecastSnapshot readFrom(DataInputStream in) throws IOException {
+        String locationSetting = in.readUTF();
+        String coordLat = in.readBoolean() ? in.readUTF() : null;
+        String coordLong = in.readBoolean() ? in.readUTF() : null;
+        int size = in.readInt();
+        List<ForecastItem> items = new ArrayList<ForecastItem>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(new ForecastItem(in));
+        }
+        return new ForecastSnapshot(locationSetting, coordLat, coordLong, items, null);
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeUTF(mLocationSetting);
+        out.writeBoolean(mCoordLat != null);
+        if (mCoordLat != null) {
+            out.writeUTF(mCoordLat);
+        }
+        out.writeBoolean(mCoordLong != null);
+        if (mCoordLong != null) {
+            out.writeUTF(mCoordLong);
+        }
+        out.writeInt(mItems.size());
+        for (ForecastItem item : mItems) {
+            item.writeTo(out);
+        }
+    }
+
+    /**
+     * @return the updates from the snapshot this one replaced, or null if it replaced nothing
+     */
+    public ForecastDiff getDiff() {
+        return mDiff;
+    }
+
+    public int size() {
+        return mItems.size();
+    }
+
+    public ForecastItem get(int position) {
+        return mItems.get(position);
+    }
+
+    /**
+     * @param date The date in milliseconds
+     * @return the position of the item for that date, or -1 if there is none
+     */
+    public int indexOfDate(long date) {
+        for (int i = 0; i < mItems.size(); i++) {
+            if (mItems.get(i).mDate == date) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+import android.view.Choreographer;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Records how long each frame takes while something animates, such as a scroll of the forecast
+ * list or the transition into the detail view, and reports the frame time percentiles.
+ *
+ * Frame times are the intervals between the frames {@link Choreographer} reports, so a frame
+ * that missed its vsync shows up as a longer interval.  Monitors only run on Jelly Bean and
+ * newer, where Choreographer is available, and only while monitoring is enabled, which it is
+ * by default in debug builds.  Reports are logged and appended to {@link #REPORT_FILE_NAME} in
+ * the app's external files directory, to be pulled off the device.
+ *
+ * A monitor must be started and stopped on the main thread.
+ */
+public class FrameMonitor {
+    private static final String LOG_TAG = FrameMonitor.class.getSimpleName();
+
+    public static final String REPORT_FILE_NAME = "frame_reports.txt";
+
+    // A frame taking longer than this has missed at least one vsync at 60fps
+    private static final long JANK_THRESHOLD_NANOS = 1000000000L / 60 * 3 / 2;
+
+    private static boolean sEnabled = BuildConfig.DEBUG;
+    private static ExecutorService sExportExecutor;
+
+    private final String mName;
+    private long[] mFrameNanos = new long[128];
+    private int mFrameCount;
+    private long mLastFrameTimeNanos;
+    private boolean mRunning;
+    // A Choreographer.FrameCallback, which doesn't exist on older versions
+    private Object mFrameCallback;
+
+    /**
+     * @param name Name of what is being monitored, used to label its reports
+     */
+    public FrameMonitor(String name) {
+        mName = name;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Starts recording frames, discarding any recorded before.  Does nothing if monitoring is
+     * disabled or the monitor is already running.
+     */
+    public void start() {
+        if (mRunning || !isEnabled()) {
+            return;
+        }
+        mRunning = true;
+        mFrameCount = 0;
+        mLastFrameTimeNanos = 0;
+        if (mFrameCallback == null) {
+            mFrameCallback = new FrameCallback(this);
+        }
+        ((FrameCallback) mFrameCallback).post();
+    }
+
+    /**
+     * Stops recording frames.
+     *
+     * @return the report of the frames recorded since {@link #start()}, or null if the monitor
+     * wasn't running or no complete frame was recorded
+     */
+    public Report stop() {
+        if (!mRunning) {
+            return null;
+        }
+        mRunning = false;
+        ((FrameCallback) mFrameCallback).remove();
+        if (mFrameCount == 0) {
+            return null;
+        }
+        return new Report(mName, Arrays.copyOf(mFrameNanos, mFrameCount));
+    }
+
+    /**
+     * Stops recording frames, then logs the report and appends it to the report file.
+     */
+    public void stopAndExport(Context context) {
+        final Report report = stop();
+        if (report == null) {
+            return;
+        }
+        Log.d(LOG_TAG, report.toString());
+
+        File dir = context.getExternalFilesDir(null);
+        if (dir == null) {
+            dir = context.getFilesDir();
+        }
+        final File file = new File(dir, REPORT_FILE_NAME);
+        if (sExportExecutor == null) {
+            sExportExecutor = Executors.newSingleThreadExecutor();
+        }
+        sExportExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    report.appendTo(file);
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Error writing frame report", e);
+                }
+            }
+        });
+    }
+
+    private void onFrame(long frameTimeNanos) {
+        if (mLastFrameTimeNanos != 0) {
+            if (mFrameCount == mFrameNanos.length) {
+                mFrameNanos = Arrays.copyOf(mFrameNanos, mFrameCount * 2);
+            }
+            mFrameNanos[mFrameCount++] = frameTimeNanos - mLastFrameTimeNanos;
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class FrameCallback implements Choreographer.FrameCallback {
+        private final FrameMonitor mMonitor;
+
+        FrameCallback(FrameMonitor monitor) {
+            mMonitor = monitor;
+        }
+
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void remove() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (mMonitor.mRunning) {
+                mMonitor.onFrame(frameTimeNanos);
+                post();
+            }
+        }
+    }
+
+    /**
+     * Frame time percentiles of one monitored run.
+     */
+    public static class Report {
+        public final String mName;
+        public final int mFrameCount;
+        public final int mJankyFrameCount;
+        public final float mP50Millis;
+        public final float mP90Millis;
+        public final float mP95Millis;
+        public final float mP99Millis;
+        public final float mMaxMillis;
+
+        Report(String name, long[] frameNanos) {
+            mName = name;
+            Arrays.sort(frameNanos);
+            mFrameCount = frameNanos.length;
+            int janky = 0;
+            for (int i = frameNanos.length - 1; i >= 0 && frameNanos[i] > JANK_THRESHOLD_NANOS; i--) {
+                janky++;
+            }
+            mJankyFrameCount = janky;
+            mP50Millis = percentile(frameNanos, 50);
+            mP90Millis = percentile(frameNanos, 90);
+            mP95Millis = percentile(frameNanos, 95);
+            mP99Millis = percentile(frameNanos, 99);
+            mMaxMillis = frameNanos[frameNanos.length - 1] / 1000000f;
+        }
+
+        // Nearest-rank percentile of sorted frame times, in milliseconds
+        private static float percentile(long[] sortedNanos, int percentile) {
+            int rank = (int) Math.ceil(percentile / 100.0 * sortedNanos.length);
+            return sortedNanos[Math.max(0, rank - 1)] / 1000000f;
+        }
+
+        void appendTo(File file) throws IOException {
+            Writer writer = new FileWriter(file, true);
+            try {
+                writer.write(System.currentTimeMillis() + " " + toString() + "\n");
+            } finally {
+                writer.close();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%s: %d frames, %d janky, p50 %.1fms, p90 %.1fms, p95 %.1fms, p99 %.1fms, max %.1fms",
+                    mName, mFrameCount, mJankyFrameCount,
+                    mP50Millis, mP90Millis, mP95Millis, mP99Millis, mMaxMillis);
+        }
+    }
+}
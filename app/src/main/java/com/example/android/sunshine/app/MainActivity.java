@@ -48,15 +48,20 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupTracer.beginSection("MainActivity.onCreate");
         super.onCreate(savedInstanceState);
         mLocation = Utility.getPreferredLocation(this);
         Uri contentUri = getIntent() != null ? getIntent().getData() : null;
 
+        // This also creates the ForecastFragment and its views
+        StartupTracer.beginSection("setContentView");
         setContentView(R.layout.activity_main);
         Toolbar toolbar = (Toolbar)findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
         getSupportActionBar().setDisplayShowTitleEnabled(false);
+        StartupTracer.endSection();
 
+        StartupTracer.beginSection("Fragment setup");
         if (findViewById(R.id.weather_detail_container) != null) {
             // The detail container view will be present only in the large-screen layouts
             // (res/layout-sw600dp). If this view is present, then the activity should be
@@ -88,25 +93,26 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
             forecastFragment.setInitialSelectedDate(
                     WeatherContract.WeatherEntry.getDateFromUri(contentUri));
         }
-
-        SunshineSyncAdapter.initializeSyncAdapter(this);
-
-        // If Google Play Services is up to date, we'll want to register GCM. If it is not, we'll
-        // skip the registration and this device will not receive any downstream messages from
-        // our fake server. Because weather alerts are not a core feature of the app, this should
-        // not affect the behavior of the app, from a user perspective.
-        if (checkPlayServices()) {
-            // Because this is the initial creation of the app, we'll want to be certain we have
-            // a token. If we do not, then we will start the IntentService that will register this
-            // application with GCM.
-            SharedPreferences sharedPreferences =
-                    PreferenceManager.getDefaultSharedPreferences(this);
-            boolean sentToken = sharedPreferences.getBoolean(SENT_TOKEN_TO_SERVER, false);
-            if (!sentToken) {
-                Intent intent = new Intent(this, RegistrationIntentService.class);
-                startService(intent);
-            }
-        }
+        StartupTracer.endSection();
+
+        // None of this is needed to show the forecast, so it waits until the first frame is out
+        // and then runs in the background.
+        new DeferredInitScheduler()
+                .add("initializeSyncAdapter", new Runnable() {
+                    @Override
+                    public void run() {
+                        // Creates the sync account and configures syncing on the first run
+                        SunshineSyncAdapter.initializeSyncAdapter(MainActivity.this);
+                    }
+                })
+                .add("registerWithGcm", new Runnable() {
+                    @Override
+                    public void run() {
+                        registerWithGcm();
+                    }
+                })
+                .startAfterFirstFrame(this);
+        StartupTracer.endSection();
     }
 
     @Override
@@ -178,22 +184,56 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
         }
     }
 
+    /**
+     * If Google Play Services is up to date, we'll want to register GCM. If it is not, we'll
+     * skip the registration and this device will not receive any downstream messages from
+     * our fake server. Because weather alerts are not a core feature of the app, this should
+     * not affect the behavior of the app, from a user perspective.
+     *
+     * This is called from a background thread.
+     */
+    private void registerWithGcm() {
+        if (checkPlayServices()) {
+            // Because this is the initial creation of the app, we'll want to be certain we have
+            // a token. If we do not, then we will start the IntentService that will register this
+            // application with GCM.
+            SharedPreferences sharedPreferences =
+                    PreferenceManager.getDefaultSharedPreferences(this);
+            boolean sentToken = sharedPreferences.getBoolean(SENT_TOKEN_TO_SERVER, false);
+            if (!sentToken) {
+                Intent intent = new Intent(this, RegistrationIntentService.class);
+                startService(intent);
+            }
+        }
+    }
+
     /**
      * Check the device to make sure it has the Google Play Services APK. If
      * it doesn't, display a dialog that allows users to download the APK from
      * the Google Play Store or enable it in the device's system settings.
+     *
+     * The check itself can be slow, so this is called from a background thread, and only
+     * posts back to the UI thread when there is something to show.
      */
     private boolean checkPlayServices() {
-        GoogleApiAvailability apiAvailability = GoogleApiAvailability.getInstance();
-        int resultCode = apiAvailability.isGooglePlayServicesAvailable(this);
+        final GoogleApiAvailability apiAvailability = GoogleApiAvailability.getInstance();
+        final int resultCode = apiAvailability.isGooglePlayServicesAvailable(this);
         if (resultCode != ConnectionResult.SUCCESS) {
-            if (apiAvailability.isUserResolvableError(resultCode)) {
-                apiAvailability.getErrorDialog(this, resultCode,
-                        PLAY_SERVICES_RESOLUTION_REQUEST).show();
-            } else {
-                Log.i(LOG_TAG, "This device is not supported.");
-                finish();
-            }
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (isFinishing()) {
+                        return;
+                    }
+                    if (apiAvailability.isUserResolvableError(resultCode)) {
+                        apiAvailability.getErrorDialog(MainActivity.this, resultCode,
+                                PLAY_SERVICES_RESOLUTION_REQUEST).show();
+                    } else {
+                        Log.i(LOG_TAG, "This device is not supported.");
+                        finish();
+                    }
+                }
+            });
             return false;
         }
         return true;
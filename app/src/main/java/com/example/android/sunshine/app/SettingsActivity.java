@@ -153,6 +153,10 @@ public class SettingsActivity extends PreferenceActivity
     // start our synchronization here
     @Override
     public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        // The work started below reads the new settings, possibly before SunshineSettings has
+        // heard about the change itself.
+        SunshineSettings.refresh(this);
+
         if ( key.equals(getString(R.string.pref_location_key)) ) {
             // we've changed the location
             // Wipe out any potential PlacePicker latlng values so that we can use this text entry.
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.support.v4.os.TraceCompat;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Marks each step of starting Sunshine as a trace section, so that it shows up in systrace,
+ * and times the steps of the first start of the process for a startup report.
+ *
+ * The report is logged once the first frame has been drawn, in debug builds.  Sections must be
+ * begun and ended on the main thread, and nest like the trace sections they mirror.
+ */
+public class StartupTracer {
+    private static final String LOG_TAG = StartupTracer.class.getSimpleName();
+
+    private static class Section {
+        final String mName;
+        final int mDepth;
+        final long mStartNanos;
+        long mEndNanos;
+
+        Section(String name, int depth, long startNanos) {
+            mName = name;
+            mDepth = depth;
+            mStartNanos = startNanos;
+        }
+    }
+
+    private static final List<Section> sSections = new ArrayList<Section>();
+    private static final List<Section> sOpenSections = new ArrayList<Section>();
+    private static boolean sReported;
+
+    private StartupTracer() {
+    }
+
+    public static void beginSection(String name) {
+        TraceCompat.beginSection(name);
+        if (!sReported) {
+            Section section = new Section(name, sOpenSections.size(), System.nanoTime());
+            sSections.add(section);
+            sOpenSections.add(section);
+        }
+    }
+
+    public static void endSection() {
+        if (!sReported) {
+            sOpenSections.remove(sOpenSections.size() - 1).mEndNanos = System.nanoTime();
+        }
+        TraceCompat.endSection();
+    }
+
+    /**
+     * Called once the first frame has been drawn.  Logs the startup report the first time, and
+     * stops timing sections after that.
+     */
+    public static void onFirstFrameDrawn() {
+        if (sReported) {
+            return;
+        }
+        sReported = true;
+        if (BuildConfig.DEBUG && !sSections.isEmpty()) {
+            long startNanos = sSections.get(0).mStartNanos;
+            long firstFrameNanos = System.nanoTime();
+            StringBuilder report = new StringBuilder("Startup report:");
+            for (Section section : sSections) {
+                report.append('\n');
+                for (int i = 0; i < section.mDepth; i++) {
+                    report.append("  ");
+                }
+                report.append(section.mName).append(": ");
+                if (section.mEndNanos == 0) {
+                    report.append("still running");
+                } else {
+                    report.append(toMillis(section.mEndNanos - section.mStartNanos)).append("ms");
+                }
+            }
+            report.append("\nFirst frame drawn after ")
+                    .append(toMillis(firstFrameNanos - startNanos)).append("ms");
+            Log.d(LOG_TAG, report.toString());
+        }
+        sSections.clear();
+        sOpenSections.clear();
+    }
+
+    private static float toMillis(long nanos) {
+        return nanos / 1000000f;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
+import com.bumptech.glide.module.GlideModule;
+import com.example.android.sunshine.shared.WeatherConditions;
+
+/**
+ * Sizes Glide for what Sunshine actually loads: one piece of art per weather condition, shown
+ * at a couple of fixed sizes.  Glide's defaults are meant for apps scrolling through feeds of
+ * photos, and size their caches by the screen rather than by what is shown.
+ *
+ * Art is decoded in Glide's default RGB_565 where it can be, so only the cache sizes change.
+ * TestSunshineGlideModule checks them against Glide's defaults, and the memory benchmarks
+ * measure the heap the forecast list and the detail widget use with and without them.
+ *
+ * Registered through meta-data in the manifest.
+ */
+public class SunshineGlideModule implements GlideModule {
+    // Enough for the art of both art packs at every target size, plus the original downloads
+    private static final int DISK_CACHE_SIZE_BYTES = 10 * 1024 * 1024;
+
+    private static volatile boolean sUseGlideDefaults;
+
+    /**
+     * Makes the next Glide instance created use Glide's own defaults instead, so that the memory
+     * benchmarks can compare the two.  Not meant for anything else.
+     */
+    public static void setUseGlideDefaults(boolean useGlideDefaults) {
+        sUseGlideDefaults = useGlideDefaults;
+    }
+
+    @Override
+    public void applyOptions(Context context, GlideBuilder builder) {
+        if (sUseGlideDefaults) {
+            return;
+        }
+        builder.setMemoryCache(new LruResourceCache(getMemoryCacheSize(context)))
+                .setBitmapPool(new LruBitmapPool(getBitmapPoolSize(context)))
+                .setDiskCache(new InternalCacheDiskCacheFactory(context, DISK_CACHE_SIZE_BYTES));
+    }
+
+    // Every condition's art at both sizes, but never more than Glide would use by default
+    static int getMemoryCacheSize(Context context) {
+        return Math.min(new MemorySizeCalculator(context).getMemoryCacheSize(),
+                WeatherConditions.GROUP_COUNT
+                        * (getIconBytes(context, R.dimen.list_icon)
+                        + getIconBytes(context, R.dimen.today_icon)));
+    }
+
+    // The today art in the list and the detail view, plus a screenful of list icons, is all that
+    // is ever in flight at once
+    static int getBitmapPoolSize(Context context) {
+        return Math.min(new MemorySizeCalculator(context).getBitmapPoolSize(),
+                2 * getIconBytes(context, R.dimen.today_icon)
+                        + WeatherConditions.GROUP_COUNT * getIconBytes(context, R.dimen.list_icon));
+    }
+
+    private static int getIconBytes(Context context, int dimenResId) {
+        Resources resources = context.getResources();
+        int size = resources.getDimensionPixelSize(dimenResId);
+        return size * size * 4;
+    }
+
+    @Override
+    public void registerComponents(Context context, Glide glide) {
+        // The default components are all we need
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+
+/**
+ * Immutable snapshot of the settings Sunshine reads over and over again, such as in every row
+ * of the forecast list and the widgets.
+ *
+ * The snapshot is built once and then rebuilt whenever the shared preferences change, so
+ * reading a setting is a single volatile read, with no preference or resource lookups.
+ *
+ * SharedPreferences notifies its listeners in no particular order, so code that writes a
+ * setting and reads it back straight away should call {@link #refresh(Context)} after writing.
+ */
+public class SunshineSettings {
+    private static volatile SunshineSettings sSettings;
+
+    // SharedPreferences only keeps a weak reference to its listeners, so hold on to ours here
+    private static SharedPreferences.OnSharedPreferenceChangeListener sListener;
+
+    public final String mLocation;
+    public final boolean mLocationLatLonAvailable;
+    public final float mLocationLatitude;
+    public final float mLocationLongitude;
+    public final @SunshineSyncAdapter.LocationStatus int mLocationStatus;
+
+    public final boolean mMetric;
+
+    // Format of the art url for the selected art pack, with %s standing for the art name
+    public final String mArtPack;
+    public final boolean mUsingLocalGraphics;
+
+    @SuppressWarnings("ResourceType")
+    private SunshineSettings(Context context, SharedPreferences prefs) {
+        String latitudeKey = context.getString(R.string.pref_location_latitude);
+        String longitudeKey = context.getString(R.string.pref_location_longitude);
+
+        mLocation = prefs.getString(context.getString(R.string.pref_location_key),
+                context.getString(R.string.pref_location_default));
+        mLocationLatLonAvailable = prefs.contains(latitudeKey) && prefs.contains(longitudeKey);
+        mLocationLatitude = prefs.getFloat(latitudeKey, Utility.DEFAULT_LATLONG);
+        mLocationLongitude = prefs.getFloat(longitudeKey, Utility.DEFAULT_LATLONG);
+        mLocationStatus = prefs.getInt(context.getString(R.string.pref_location_status_key),
+                SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN);
+
+        String metric = context.getString(R.string.pref_units_metric);
+        mMetric = prefs.getString(context.getString(R.string.pref_units_key), metric)
+                .equals(metric);
+
+        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
+        mArtPack = prefs.getString(context.getString(R.string.pref_art_pack_key),
+                sunshineArtPack);
+        mUsingLocalGraphics = mArtPack.equals(sunshineArtPack);
+    }
+
+    /**
+     * @param context Context used to read the settings the first time they are needed
+     * @return the current settings
+     */
+    public static SunshineSettings get(Context context) {
+        SunshineSettings settings = sSettings;
+        if (settings == null) {
+            settings = refresh(context);
+        }
+        return settings;
+    }
+
+    /**
+     * Rebuilds the snapshot from the shared preferences.
+     *
+     * @param context Context used to read the settings
+     * @return the new settings
+     */
+    public static synchronized SunshineSettings refresh(Context context) {
+        final Context appContext = context.getApplicationContext();
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(appContext);
+        if (sListener == null) {
+            // Registered before the first read, so that no change can slip in between
+            sListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences sharedPreferences,
+                                                      String key) {
+                    refresh(appContext);
+                }
+            };
+            prefs.registerOnSharedPreferenceChangeListener(sListener);
+        }
+        SunshineSettings settings = new SunshineSettings(appContext, prefs);
+        sSettings = settings;
+        return settings;
+    }
+}
@@ -17,7 +17,14 @@ package com.example.android.sunshine.app.muzei;
 
 import android.content.Intent;
 import android.database.Cursor;
+import android.graphics.Bitmap;
 import android.net.Uri;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.request.FutureTarget;
 
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.Utility;
@@ -26,10 +33,23 @@ import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
 import com.google.android.apps.muzei.api.Artwork;
 import com.google.android.apps.muzei.api.MuzeiArtSource;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+
 /**
  * Muzei source that changes your background based on the current weather conditions
+ *
+ * Each condition's image is downloaded once and stored downscaled to the screen, and Muzei is
+ * given the local copy through {@link WeatherArtProvider}.
  */
 public class WeatherMuzeiSource extends MuzeiArtSource {
+    private static final String LOG_TAG = WeatherMuzeiSource.class.getSimpleName();
+
+    private static final int JPEG_QUALITY = 90;
+
     private static final String[] FORECAST_COLUMNS = new String[]{
             WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
             WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
@@ -38,6 +58,9 @@ public class WeatherMuzeiSource extends MuzeiArtSource {
     private static final int INDEX_WEATHER_ID = 0;
     private static final int INDEX_SHORT_DESC = 1;
 
+    // Appended to the token of artwork published from its remote url
+    private static final String REMOTE_TOKEN_SUFFIX = "|remote";
+
     public WeatherMuzeiSource() {
         super("WeatherMuzeiSource");
     }
@@ -64,16 +87,83 @@ public class WeatherMuzeiSource extends MuzeiArtSource {
             String desc = cursor.getString(INDEX_SHORT_DESC);
 
             String imageUrl = Utility.getImageUrlForWeatherCondition(weatherId);
-            // Only publish a new wallpaper if we have a valid image
-            if (imageUrl != null) {
+            // Only publish a new wallpaper if we have a valid image, and the condition or the
+            // location changed, so Muzei doesn't reload the same image after every sync
+            String token = weatherId + "|" + location;
+            Artwork currentArtwork = getCurrentArtwork();
+            if (imageUrl != null && (currentArtwork == null
+                    || !token.equals(currentArtwork.getToken()))) {
+                Uri imageUri = getScreenSizedImage(imageUrl);
+                if (imageUri == null) {
+                    // Fall back to the full-size original, but mark the token so that the next
+                    // update tries making the local copy again
+                    imageUri = Uri.parse(imageUrl);
+                    token += REMOTE_TOKEN_SUFFIX;
+                }
                 publishArtwork(new Artwork.Builder()
-                        .imageUri(Uri.parse(imageUrl))
+                        .imageUri(imageUri)
                         .title(desc)
                         .byline(location)
+                        .token(token)
                         .viewIntent(new Intent(this, MainActivity.class))
                         .build());
             }
         }
         cursor.close();
     }
+
+    /**
+     * Returns a local copy of the image, downscaled to just cover the screen.  The original is
+     * only downloaded the first time, and every condition sharing the image shares the copy.
+     *
+     * @return the copy's content URI, or null if it couldn't be made
+     */
+    private Uri getScreenSizedImage(String imageUrl) {
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        int width = Math.min(metrics.widthPixels, metrics.heightPixels);
+        int height = Math.max(metrics.widthPixels, metrics.heightPixels);
+        File directory = WeatherArtProvider.getArtDirectory(this);
+        File file = new File(directory, Integer.toHexString(imageUrl.hashCode())
+                + "_" + width + "x" + height + ".jpg");
+        if (file.exists()) {
+            return WeatherArtProvider.getContentUri(this, file);
+        }
+
+        // Decode with the largest subsampling that still covers the screen.  The original is
+        // kept out of Glide's caches, since it's never needed again.
+        FutureTarget<Bitmap> target = Glide.with(this)
+                .load(imageUrl)
+                .asBitmap()
+                .approximate()
+                .diskCacheStrategy(DiskCacheStrategy.NONE)
+                .skipMemoryCache(true)
+                .into(width, height);
+        File tempFile = new File(directory, file.getName() + ".tmp");
+        try {
+            Bitmap bitmap = target.get();
+            float scale = Math.max((float) width / bitmap.getWidth(),
+                    (float) height / bitmap.getHeight());
+            if (scale < 1f) {
+                bitmap = Bitmap.createScaledBitmap(bitmap,
+                        Math.round(bitmap.getWidth() * scale),
+                        Math.round(bitmap.getHeight() * scale), true);
+            }
+            OutputStream out = new FileOutputStream(tempFile);
+            try {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+            } finally {
+                out.close();
+            }
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Couldn't rename " + tempFile);
+            }
+            return WeatherArtProvider.getContentUri(this, file);
+        } catch (InterruptedException | ExecutionException | IOException e) {
+            Log.e(LOG_TAG, "Error storing art from " + imageUrl, e);
+            tempFile.delete();
+            return null;
+        } finally {
+            Glide.clear(target);
+        }
+    }
 }
@@ -0,0 +1,102 @@
+package com.example.android.sunshine.app.sync;
+
+import android.annotation.TargetApi;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.SystemClock;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
+
+/**
+ * Refreshes everything showing the weather outside the app - the widgets and Muzei - once a
+ * burst of data updates has settled, rather than once per update.
+ *
+ * Syncs often come in quick succession, for instance while the location is being edited, or
+ * when a manual refresh and a GCM tickle overlap.  Each call to {@link #requestRefresh(Context)}
+ * pushes the refresh back until no update has been requested for the debounce window, but never
+ * further than the maximum delay after the first request of the burst.  The refresh reads
+ * whatever is in the database when it runs, so it always shows the final state.  An alarm is
+ * used rather than a Handler so the refresh still happens if the sync's process goes away.
+ */
+public class RefreshCoordinator extends BroadcastReceiver {
+    private static final String ACTION_REFRESH =
+            "com.example.android.sunshine.app.sync.ACTION_REFRESH";
+
+    private static final String PREFS_NAME = "refresh_coordinator";
+    // Elapsed realtime of the first request since the last refresh, or 0 if none is pending
+    private static final String PREF_FIRST_REQUEST = "first_request";
+
+    /**
+     * Schedules a refresh of the widgets and Muzei after the debounce window, replacing any
+     * refresh scheduled before.
+     */
+    public static synchronized void requestRefresh(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        long now = SystemClock.elapsedRealtime();
+        long firstRequest = prefs.getLong(PREF_FIRST_REQUEST, 0);
+        // A first request from before the last boot can't be pending any more
+        if (firstRequest == 0 || firstRequest > now) {
+            firstRequest = now;
+            prefs.edit().putLong(PREF_FIRST_REQUEST, firstRequest).apply();
+        }
+
+        long window = context.getResources().getInteger(R.integer.refresh_debounce_window);
+        long maxDelay = context.getResources().getInteger(R.integer.refresh_max_delay);
+        long refreshAt = Math.min(now + window, firstRequest + maxDelay);
+
+        // The same PendingIntent each time, so that setting it moves the one alarm.  Since
+        // KitKat, plain alarms may be batched well past the time asked for.
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            setExactAlarm(alarmManager, refreshAt, getRefreshIntent(context));
+        } else {
+            alarmManager.set(AlarmManager.ELAPSED_REALTIME, refreshAt, getRefreshIntent(context));
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static void setExactAlarm(AlarmManager alarmManager, long triggerAt,
+                                      PendingIntent operation) {
+        alarmManager.setExact(AlarmManager.ELAPSED_REALTIME, triggerAt, operation);
+    }
+
+    private static PendingIntent getRefreshIntent(Context context) {
+        Intent intent = new Intent(context, RefreshCoordinator.class).setAction(ACTION_REFRESH);
+        return PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!ACTION_REFRESH.equals(intent.getAction())) {
+            return;
+        }
+        synchronized (RefreshCoordinator.class) {
+            context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                    .remove(PREF_FIRST_REQUEST).apply();
+        }
+        updateWidgets(context);
+        updateMuzei(context);
+    }
+
+    private static void updateWidgets(Context context) {
+        // Setting the package ensures that only components in our app will receive the broadcast
+        Intent dataUpdatedIntent = new Intent(SunshineSyncAdapter.ACTION_DATA_UPDATED)
+                .setPackage(context.getPackageName());
+        context.sendBroadcast(dataUpdatedIntent);
+    }
+
+    private static void updateMuzei(Context context) {
+        // Muzei is only compatible with Jelly Bean MR1+ devices, so there's no need to update the
+        // Muzei background on lower API level devices
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            context.startService(new Intent(SunshineSyncAdapter.ACTION_DATA_UPDATED)
+                    .setClass(context, WeatherMuzeiSource.class));
+        }
+    }
+}
@@ -32,18 +32,16 @@ import android.text.format.Time;
 import android.util.Log;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.example.android.sunshine.app.BuildConfig;
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.SunshineSettings;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
-import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
+import com.example.android.sunshine.app.widget.TodayWidgetIntentService;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.ResultCallback;
-import com.google.android.gms.wearable.DataApi;
-import com.google.android.gms.wearable.PutDataMapRequest;
-import com.google.android.gms.wearable.PutDataRequest;
 import com.google.android.gms.wearable.Wearable;
 
 import org.json.JSONArray;
@@ -58,6 +56,7 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.Set;
 import java.util.Vector;
 import java.util.concurrent.ExecutionException;
 
@@ -75,6 +74,8 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter implements
     private static final int WEATHER_NOTIFICATION_ID = 3004;
 
     private GoogleApiClient mGoogleApiClient;
+    // Whether this sync inserted the weather of any location
+    private boolean mInsertedWeather;
 
     private static final String[] NOTIFY_WEATHER_PROJECTION = new String[] {
             WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
@@ -89,11 +90,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter implements
     private static final int INDEX_MIN_TEMP = 2;
     private static final int INDEX_SHORT_DESC = 3;
 
-    private static final String WEATHER_DATA_PATH = "/weather-data";
-    private static final String ICON_KEY = "icon";
-    private static final String HIGH_TEMP_KEY = "high";
-    private static final String LOW_TEMP_KEY = "low";
-
 
 
     @Retention(RetentionPolicy.SOURCE)
@@ -128,54 +124,132 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter implements
                 .build();
 
         mGoogleApiClient.connect();
-
-        // These two need to be declared outside the try/catch
-        // so that they can be closed in the finally block.
-        HttpURLConnection urlConnection = null;
-        BufferedReader reader = null;
-
-        // Will contain the raw JSON response as a string.
-        String forecastJsonStr = null;
-
-        String format = "json";
-        String units = "metric";
-        int numDays = 14;
+        mInsertedWeather = false;
 
         try {
-            // Construct the URL for the OpenWeatherMap query
-            // Possible parameters are avaiable at OWM's forecast API page, at
-            // http://openweathermap.org/API#forecast
-            final String FORECAST_BASE_URL =
-                    "http://api.openweathermap.org/data/2.5/forecast/daily?";
-            final String QUERY_PARAM = "q";
-            final String LAT_PARAM = "lat";
-            final String LON_PARAM = "lon";
-            final String FORMAT_PARAM = "mode";
-            final String UNITS_PARAM = "units";
-            final String DAYS_PARAM = "cnt";
-            final String APPID_PARAM = "APPID";
-
-            Uri.Builder uriBuilder = Uri.parse(FORECAST_BASE_URL).buildUpon();
-
             // Instead of always building the query based off of the location string, we want to
             // potentially build a query using a lat/lon value. This will be the case when we are
             // syncing based off of a new location from the Place Picker API. So we need to check
             // if we have a lat/lon to work with, and use those when we do. Otherwise, the weather
             // service may not understand the location address provided by the Place Picker API
             // and the user could end up with no weather! The horror!
-            if (Utility.isLocationLatLonAvailable(context)) {
-                uriBuilder.appendQueryParameter(LAT_PARAM, locationLatitude)
-                        .appendQueryParameter(LON_PARAM, locationLongitude);
+            Uri builtUri = Utility.isLocationLatLonAvailable(context)
+                    ? buildForecastUri(null, locationLatitude, locationLongitude)
+                    : buildForecastUri(locationQuery, null, null);
+
+            String forecastJsonStr = downloadForecast(builtUri);
+            if (forecastJsonStr == null) {
+                // Stream was empty.  No point in parsing.
+                setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
             } else {
-                uriBuilder.appendQueryParameter(QUERY_PARAM, locationQuery);
+                getWeatherDataFromJson(forecastJsonStr, locationQuery, true);
             }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error ", e);
+            // If the code didn't successfully get the weather data, there's no point in attempting
+            // to parse it.
+            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, e.getMessage(), e);
+            e.printStackTrace();
+            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
+        } finally {
+            if ((mGoogleApiClient != null) && (mGoogleApiClient.isConnected())) {
+                mGoogleApiClient.disconnect();
+            }
+        }
+
+        // Then the other locations today widgets are pinned to, even if the preferred one failed
+        syncPinnedLocations(locationQuery);
+
+        if (mInsertedWeather) {
+            deleteOldWeather();
+            // Widgets and Muzei are refreshed once this and any following syncs settle
+            RefreshCoordinator.requestRefresh(context);
+        }
+    }
+
+    /**
+     * Deletes the weather of every location from before today, so we don't build up an endless
+     * history.
+     */
+    private void deleteOldWeather() {
+        Time dayTime = new Time();
+        dayTime.setToNow();
+        int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+        dayTime = new Time();
+        getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
+                new String[] {Long.toString(dayTime.setJulianDay(julianStartDay-1))});
+    }
+
+    /**
+     * Syncs the forecast for each location a Today widget is pinned to, other than the preferred
+     * one.  These only feed the widgets, so failures are logged rather than shown as the
+     * location status.
+     */
+    private void syncPinnedLocations(String preferredLocation) {
+        Set<String> locations = TodayWidgetIntentService.getPinnedLocations(getContext());
+        locations.remove(preferredLocation);
+        for (String location : locations) {
+            try {
+                String forecastJsonStr = downloadForecast(buildForecastUri(location, null, null));
+                if (forecastJsonStr != null) {
+                    getWeatherDataFromJson(forecastJsonStr, location, false);
+                }
+            } catch (IOException | JSONException e) {
+                Log.e(LOG_TAG, "Error syncing pinned location " + location, e);
+            }
+        }
+    }
+
+    /**
+     * Builds the OpenWeatherMap query for the forecast at a location, either by name or, when a
+     * latitude and longitude are given, by coordinates.
+     */
+    private static Uri buildForecastUri(String locationQuery, String latitude, String longitude) {
+        String format = "json";
+        String units = "metric";
+        int numDays = 14;
+
+        // Construct the URL for the OpenWeatherMap query
+        // Possible parameters are avaiable at OWM's forecast API page, at
+        // http://openweathermap.org/API#forecast
+        final String FORECAST_BASE_URL =
+                "http://api.openweathermap.org/data/2.5/forecast/daily?";
+        final String QUERY_PARAM = "q";
+        final String LAT_PARAM = "lat";
+        final String LON_PARAM = "lon";
+        final String FORMAT_PARAM = "mode";
+        final String UNITS_PARAM = "units";
+        final String DAYS_PARAM = "cnt";
+        final String APPID_PARAM = "APPID";
+
+        Uri.Builder uriBuilder = Uri.parse(FORECAST_BASE_URL).buildUpon();
+        if (latitude != null && longitude != null) {
+            uriBuilder.appendQueryParameter(LAT_PARAM, latitude)
+                    .appendQueryParameter(LON_PARAM, longitude);
+        } else {
+            uriBuilder.appendQueryParameter(QUERY_PARAM, locationQuery);
+        }
+
+        return uriBuilder.appendQueryParameter(FORMAT_PARAM, format)
+                .appendQueryParameter(UNITS_PARAM, units)
+                .appendQueryParameter(DAYS_PARAM, Integer.toString(numDays))
+                .appendQueryParameter(APPID_PARAM, BuildConfig.OPEN_WEATHER_MAP_API_KEY)
+                .build();
+    }
 
-            Uri builtUri = uriBuilder.appendQueryParameter(FORMAT_PARAM, format)
-                    .appendQueryParameter(UNITS_PARAM, units)
-                    .appendQueryParameter(DAYS_PARAM, Integer.toString(numDays))
-                    .appendQueryParameter(APPID_PARAM, BuildConfig.OPEN_WEATHER_MAP_API_KEY)
-                    .build();
+    /**
+     * @return the raw JSON response for the query, or null if it was empty
+     */
+    private String downloadForecast(Uri builtUri) throws IOException {
+        // These two need to be declared outside the try/catch
+        // so that they can be closed in the finally block.
+        HttpURLConnection urlConnection = null;
+        BufferedReader reader = null;
 
+        try {
             URL url = new URL(builtUri.toString());
 
             // Create the request to OpenWeatherMap, and open the connection
@@ -188,7 +262,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter implements
             StringBuffer buffer = new StringBuffer();
             if (inputStream == null) {
                 // Nothing to do.
-                return;
+                return null;
             }
             reader = new BufferedReader(new InputStreamReader(inputStream));
 
@@ -201,21 +275,9 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter implements
             }
 
             if (buffer.length() == 0) {
-                // Stream was empty.  No point in parsing.
-                setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-                return;
+                return null;
             }
-            forecastJsonStr = buffer.toString();
-            getWeatherDataFromJson(forecastJsonStr, locationQuery);
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Error ", e);
-            // If the code didn't successfully get the weather data, there's no point in attempting
-            // to parse it.
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, e.getMessage(), e);
-            e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
+            return buffer.toString();
         } finally {
             if (urlConnection != null) {
                 urlConnection.disconnect();
@@ -227,12 +289,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter implements
                     Log.e(LOG_TAG, "Error closing stream", e);
                 }
             }
-
-            if ((mGoogleApiClient != null) && (mGoogleApiClient.isConnected())) {
-                mGoogleApiClient.disconnect();
-            }
         }
-        return;
     }
 
     /**
@@ -243,7 +300,8 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter implements
      * into an Object hierarchy for us.
      */
     private void getWeatherDataFromJson(String forecastJsonStr,
-                                        String locationSetting)
+                                        String locationSetting,
+                                        boolean isPreferredLocation)
             throws JSONException {
 
         // Now we have a String representing the complete forecast in JSON Format.
@@ -294,10 +352,14 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter implements
                     case HttpURLConnection.HTTP_OK:
                         break;
                     case HttpURLConnection.HTTP_NOT_FOUND:
-                        setLocationStatus(getContext(), LOCATION_STATUS_INVALID);
+                        if (isPreferredLocation) {
+                            setLocationStatus(getContext(), LOCATION_STATUS_INVALID);
+                        }
                         return;
                     default:
-                        setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
+                        if (isPreferredLocation) {
+                            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
+                        }
                         return;
                 }
             }
@@ -315,6 +377,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter implements
 
             // Insert the new weather information into the database
             Vector<ContentValues> cVVector = new Vector<ContentValues>(weatherArray.length());
+            int[] weatherIds = new int[weatherArray.length()];
 
             // OWM returns daily forecasts based upon the local time of the city that is being
             // asked for, which means that we need to know the GMT offset to translate this data
@@ -364,6 +427,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter implements
                         dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
                 description = weatherObject.getString(OWM_DESCRIPTION);
                 weatherId = weatherObject.getInt(OWM_WEATHER_ID);
+                weatherIds[i] = weatherId;
 
                 // Temperatures are in a child object called "temp".  Try not to name variables
                 // "temp" when working with temperature.  It confuses everybody.
@@ -393,23 +457,30 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter implements
                 ContentValues[] cvArray = new ContentValues[cVVector.size()];
                 cVVector.toArray(cvArray);
                 getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
+                // Old data is deleted and the widgets refreshed once all locations are synced
+                mInsertedWeather = true;
 
-                // delete old data so we don't build up an endless history
-                getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
-                        WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
-                        new String[] {Long.toString(dayTime.setJulianDay(julianStartDay-1))});
-
-                updateWidgets();
-                updateMuzei();
+                // Fetch the art first, so that nothing updated below waits on it
+                if (isPreferredLocation) {
+                    WeatherArtPrefetcher.prefetch(context, weatherIds);
+                }
 
-                newDataCursor = getTodaysData(context);
-                notifyWeather(newDataCursor);
-                sendDataToWearable(newDataCursor, context);
+                // Only the preferred location is notified about and sent to the wearable
+                if (isPreferredLocation) {
+                    newDataCursor = getTodaysData(context);
+                    notifyWeather(newDataCursor);
+                    WearableForecastSender.send(context, mGoogleApiClient);
+                }
             }
             Log.d(LOG_TAG, "Sync Complete. " + cVVector.size() + " Inserted");
-            setLocationStatus(getContext(), LOCATION_STATUS_OK);
+            if (isPreferredLocation) {
+                setLocationStatus(getContext(), LOCATION_STATUS_OK);
+            }
 
         } catch (JSONException e) {
+            if (!isPreferredLocation) {
+                throw e;
+            }
             Log.e(LOG_TAG, e.getMessage(), e);
             e.printStackTrace();
             setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
@@ -420,24 +491,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter implements
         }
     }
 
-    private void updateWidgets() {
-        Context context = getContext();
-        // Setting the package ensures that only components in our app will receive the broadcast
-        Intent dataUpdatedIntent = new Intent(ACTION_DATA_UPDATED)
-                .setPackage(context.getPackageName());
-        context.sendBroadcast(dataUpdatedIntent);
-    }
-
-    private void updateMuzei() {
-        // Muzei is only compatible with Jelly Bean MR1+ devices, so there's no need to update the
-        // Muzei background on lower API level devices
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-            Context context = getContext();
-            context.startService(new Intent(ACTION_DATA_UPDATED)
-                    .setClass(context, WeatherMuzeiSource.class));
-        }
-    }
-
     private void notifyWeather(Cursor cursor) {
         Context context = getContext();
         //checking the last update and notify if it' the first of the day
@@ -482,6 +535,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter implements
                         largeIcon = Glide.with(context)
                                 .load(artUrl)
                                 .asBitmap()
+                                .diskCacheStrategy(DiskCacheStrategy.ALL)
                                 .error(artResourceId)
                                 .fitCenter()
                                 .into(largeIconWidth, largeIconHeight).get();
@@ -549,36 +603,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter implements
 
     }
 
-    private void sendDataToWearable(Cursor cursor, Context context){
-        if (cursor.moveToFirst()) {
-            int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-            double high = cursor.getDouble(INDEX_MAX_TEMP);
-            double low = cursor.getDouble(INDEX_MIN_TEMP);
-
-            if (mGoogleApiClient.isConnected()) {
-
-                PutDataMapRequest dataMap = PutDataMapRequest.create(WEATHER_DATA_PATH);
-                dataMap.getDataMap().putInt(ICON_KEY, weatherId);
-                dataMap.getDataMap().putString(HIGH_TEMP_KEY, Utility.formatTemperature(context, high));
-                dataMap.getDataMap().putString(LOW_TEMP_KEY, Utility.formatTemperature(context, low));
-                //dataMap.getDataMap().putLong("time",System.currentTimeMillis());
-                PutDataRequest request = dataMap.asPutDataRequest();
-                request.setUrgent();
-
-                Wearable.DataApi.putDataItem(mGoogleApiClient, request)
-                        .setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
-                            @Override
-                            public void onResult(DataApi.DataItemResult dataItemResult) {
-                                Log.d(LOG_TAG, "Sending image was successful: " + dataItemResult.getStatus()
-                                        .isSuccess());
-                            }
-                        });
-            }
-
-        }
-
-    }
-
     /**
      * Helper method to handle insertion of a new location in the weather database.
      *
@@ -733,6 +757,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter implements
         SharedPreferences.Editor spe = sp.edit();
         spe.putInt(c.getString(R.string.pref_location_status_key), locationStatus);
         spe.commit();
+        SunshineSettings.refresh(c);
     }
 
     @Override
@@ -0,0 +1,126 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.shared.ForecastPayload;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.PutDataMapRequest;
+import com.google.android.gms.wearable.PutDataRequest;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the preferred location's forecast to the wearable as a {@link ForecastPayload}.
+ *
+ * A forecast that hasn't changed since it was last sent isn't sent again.  The data item is
+ * only marked urgent when today's weather changed, which is all the watch face shows right
+ * away; changes further out can wait for the next time the data layer syncs.
+ */
+class WearableForecastSender {
+    private static final String LOG_TAG = WearableForecastSender.class.getSimpleName();
+
+    static final String WEATHER_DATA_PATH = "/weather-data";
+
+    private static final String PREFS_NAME = "wearable_forecast";
+    private static final String KEY_CONTENT_HASH = "content_hash";
+    private static final String KEY_TODAY_HASH = "today_hash";
+
+    private static final long PUT_TIMEOUT_SECONDS = 30;
+
+    private static final String[] FORECAST_COLUMNS = {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
+    };
+    // these indices must match the projection
+    private static final int INDEX_DATE = 0;
+    private static final int INDEX_WEATHER_ID = 1;
+    private static final int INDEX_MAX_TEMP = 2;
+    private static final int INDEX_MIN_TEMP = 3;
+
+    private WearableForecastSender() {
+    }
+
+    /**
+     * Sends the forecast if it changed since it was last sent.  This waits for the data item to
+     * be stored, so it should only be called from the sync thread.
+     */
+    static void send(Context context, GoogleApiClient googleApiClient) {
+        if (googleApiClient == null || !googleApiClient.isConnected()) {
+            return;
+        }
+        ForecastPayload payload = buildPayload(context);
+        if (payload == null || payload.getDayCount() == 0) {
+            return;
+        }
+
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        long contentHash = payload.getContentHash();
+        if (contentHash == prefs.getLong(KEY_CONTENT_HASH, 0)) {
+            Log.d(LOG_TAG, "Forecast unchanged, not sending it to the wearable");
+            return;
+        }
+
+        PutDataMapRequest dataMap = PutDataMapRequest.create(WEATHER_DATA_PATH);
+        dataMap.getDataMap().putByteArray(ForecastPayload.KEY_FORECAST, payload.toBytes());
+        PutDataRequest request = dataMap.asPutDataRequest();
+        long todayHash = payload.getDayHash(0);
+        if (todayHash != prefs.getLong(KEY_TODAY_HASH, 0)) {
+            request.setUrgent();
+        }
+
+        DataApi.DataItemResult result = Wearable.DataApi.putDataItem(googleApiClient, request)
+                .await(PUT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        Log.d(LOG_TAG, "Sending forecast was successful: " + result.getStatus().isSuccess());
+        if (result.getStatus().isSuccess()) {
+            prefs.edit()
+                    .putLong(KEY_CONTENT_HASH, contentHash)
+                    .putLong(KEY_TODAY_HASH, todayHash)
+                    .apply();
+        }
+    }
+
+    private static ForecastPayload buildPayload(Context context) {
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                        Utility.getPreferredLocation(context), System.currentTimeMillis()),
+                FORECAST_COLUMNS, null, null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            int days = Math.min(cursor.getCount(), ForecastPayload.MAX_DAYS);
+            int[] julianDays = new int[days];
+            int[] weatherIds = new int[days];
+            int[] highs = new int[days];
+            int[] lows = new int[days];
+            boolean isMetric = Utility.isMetric(context);
+            Time time = new Time();
+            time.setToNow();
+            for (int i = 0; i < days && cursor.moveToNext(); i++) {
+                julianDays[i] = Time.getJulianDay(cursor.getLong(INDEX_DATE), time.gmtoff);
+                weatherIds[i] = cursor.getInt(INDEX_WEATHER_ID);
+                highs[i] = toWholeDegrees(cursor.getDouble(INDEX_MAX_TEMP), isMetric);
+                lows[i] = toWholeDegrees(cursor.getDouble(INDEX_MIN_TEMP), isMetric);
+            }
+            return new ForecastPayload(julianDays, weatherIds, highs, lows);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Temperatures are stored in Celsius, and shown in whichever units the user chose
+    private static int toWholeDegrees(double celsius, boolean isMetric) {
+        return (int) Math.round(isMetric ? celsius : celsius * 1.8 + 32);
+    }
+}
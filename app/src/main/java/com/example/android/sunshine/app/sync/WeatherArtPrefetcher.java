@@ -0,0 +1,97 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.support.v4.net.ConnectivityManagerCompat;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.target.Target;
+import com.example.android.sunshine.app.Utility;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Downloads the art pack images a freshly synced forecast needs into Glide's disk cache, so
+ * that the forecast list, the detail view, the notification and the widgets never have to wait
+ * on the network for them.
+ *
+ * Images are cached in their original form.  Everything that loads art uses
+ * DiskCacheStrategy.ALL, so each target size is decoded from that local copy on first use, and
+ * cached again at that size.
+ */
+public class WeatherArtPrefetcher {
+    private static final String LOG_TAG = WeatherArtPrefetcher.class.getSimpleName();
+
+    // Stop starting downloads once this much art has been fetched in one sync
+    private static final long PREFETCH_BUDGET_BYTES = 1024 * 1024;
+
+    // Don't let a single slow image hold up the rest of the sync
+    private static final long PREFETCH_TIMEOUT_SECONDS = 15;
+
+    private WeatherArtPrefetcher() {
+    }
+
+    /**
+     * Prefetches the art for each day of the forecast.  This blocks on the network, so it should
+     * only be called from the sync thread.
+     *
+     * On a metered network only today's art is fetched, since that is what the notification
+     * and the widgets show right away.  The rest is left to be loaded on demand.
+     *
+     * @param context Context to use for Glide and the settings
+     * @param weatherIds Weather condition ids of the forecast, starting with today
+     */
+    static void prefetch(Context context, int[] weatherIds) {
+        if (weatherIds.length == 0 || Utility.usingLocalGraphics(context)) {
+            return;
+        }
+
+        ConnectivityManager cm =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
+        if (activeNetwork == null || !activeNetwork.isConnected()) {
+            return;
+        }
+        int dayCount = ConnectivityManagerCompat.isActiveNetworkMetered(cm)
+                ? 1 : weatherIds.length;
+
+        // Many days share the same condition, so fetch each image only once, in day order
+        Set<String> artUrls = new LinkedHashSet<String>();
+        for (int i = 0; i < dayCount; i++) {
+            String artUrl = Utility.getArtUrlForWeatherCondition(context, weatherIds[i]);
+            if (artUrl != null) {
+                artUrls.add(artUrl);
+            }
+        }
+
+        int fetchedCount = 0;
+        long fetchedBytes = 0;
+        for (String artUrl : artUrls) {
+            if (fetchedBytes >= PREFETCH_BUDGET_BYTES) {
+                Log.d(LOG_TAG, "Art prefetch budget spent, leaving the rest to load on demand");
+                break;
+            }
+            try {
+                File file = Glide.with(context)
+                        .load(artUrl)
+                        .downloadOnly(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL)
+                        .get(PREFETCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                fetchedCount++;
+                fetchedBytes += file.length();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException | TimeoutException e) {
+                Log.e(LOG_TAG, "Error prefetching art from " + artUrl, e);
+            }
+        }
+        Log.d(LOG_TAG, "Prefetched " + fetchedCount + " art images, " + fetchedBytes + " bytes");
+    }
+}
@@ -7,13 +7,14 @@ import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Binder;
 import android.os.Build;
+import android.support.v4.util.LruCache;
 import android.util.Log;
 import android.widget.AdapterView;
 import android.widget.RemoteViews;
 import android.widget.RemoteViewsService;
 
 import com.bumptech.glide.Glide;
-import com.bumptech.glide.request.target.Target;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
@@ -42,14 +43,32 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
     static final int INDEX_WEATHER_MAX_TEMP = 4;
     static final int INDEX_WEATHER_MIN_TEMP = 5;
 
+    // Most of the forecast shares a handful of conditions, so a small budget covers every row
+    private static final int ICON_CACHE_BYTES = 1024 * 1024;
+
+    /*
+        Row icons, already decoded at the widget's icon size, keyed by art URL and size.  Each
+        condition is only decoded once, and the icons are reused by every row showing it and
+        across data set changes, for as long as the process lives.
+     */
+    private static final LruCache<String, Bitmap> sIconCache =
+            new LruCache<String, Bitmap>(ICON_CACHE_BYTES) {
+                @Override
+                protected int sizeOf(String key, Bitmap bitmap) {
+                    return bitmap.getRowBytes() * bitmap.getHeight();
+                }
+            };
+
     @Override
     public RemoteViewsFactory onGetViewFactory(Intent intent) {
         return new RemoteViewsFactory() {
             private Cursor data = null;
+            private int mIconSize;
 
             @Override
             public void onCreate() {
-                // Nothing to do
+                // Decode at the size of the widget's icon rather than the full download
+                mIconSize = getResources().getDimensionPixelSize(R.dimen.list_icon);
             }
 
             @Override
@@ -100,15 +119,7 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                 if ( !Utility.usingLocalGraphics(DetailWidgetRemoteViewsService.this) ) {
                     String weatherArtResourceUrl = Utility.getArtUrlForWeatherCondition(
                             DetailWidgetRemoteViewsService.this, weatherId);
-                    try {
-                        weatherArtImage = Glide.with(DetailWidgetRemoteViewsService.this)
-                                .load(weatherArtResourceUrl)
-                                .asBitmap()
-                                .error(weatherArtResourceId)
-                                .into(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL).get();
-                    } catch (InterruptedException | ExecutionException e) {
-                        Log.e(LOG_TAG, "Error retrieving large icon from " + weatherArtResourceUrl, e);
-                    }
+                    weatherArtImage = getIcon(weatherArtResourceUrl, weatherArtResourceId);
                 }
                 String description = data.getString(INDEX_WEATHER_DESC);
                 long dateInMillis = data.getLong(INDEX_WEATHER_DATE);
@@ -144,6 +155,27 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                 return views;
             }
 
+            // Returns the icon for the art URL, decoding it only if it isn't cached yet
+            private Bitmap getIcon(String url, int errorResourceId) {
+                String key = url + "@" + mIconSize;
+                Bitmap icon = sIconCache.get(key);
+                if (icon == null) {
+                    try {
+                        icon = Glide.with(DetailWidgetRemoteViewsService.this)
+                                .load(url)
+                                .asBitmap()
+                                .diskCacheStrategy(DiskCacheStrategy.ALL)
+                                .error(errorResourceId)
+                                .fitCenter()
+                                .into(mIconSize, mIconSize).get();
+                        sIconCache.put(key, icon);
+                    } catch (InterruptedException | ExecutionException e) {
+                        Log.e(LOG_TAG, "Error retrieving large icon from " + url, e);
+                    }
+                }
+                return icon;
+            }
+
             @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1)
             private void setRemoteContentDescription(RemoteViews views, String description) {
                 views.setContentDescription(R.id.widget_icon, description);
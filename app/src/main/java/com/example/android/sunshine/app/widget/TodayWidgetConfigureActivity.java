@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.appwidget.AppWidgetManager;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.text.TextUtils;
+import android.view.View;
+import android.widget.EditText;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+
+/**
+ * Lets the user pin a new Today widget to a location other than the one in the settings, so
+ * that several widgets can show different cities.  Leaving the location empty makes the widget
+ * follow the settings, like before.
+ */
+public class TodayWidgetConfigureActivity extends AppCompatActivity {
+    private int mAppWidgetId = AppWidgetManager.INVALID_APPWIDGET_ID;
+    private EditText mLocationView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        // If the user backs out, the widget host shouldn't add the widget
+        setResult(RESULT_CANCELED);
+
+        Bundle extras = getIntent().getExtras();
+        if (extras != null) {
+            mAppWidgetId = extras.getInt(AppWidgetManager.EXTRA_APPWIDGET_ID,
+                    AppWidgetManager.INVALID_APPWIDGET_ID);
+        }
+        if (mAppWidgetId == AppWidgetManager.INVALID_APPWIDGET_ID) {
+            finish();
+            return;
+        }
+
+        setContentView(R.layout.activity_widget_configure);
+        mLocationView = (EditText) findViewById(R.id.widget_location_edittext);
+        mLocationView.setHint(getString(R.string.widget_configure_location_hint,
+                Utility.getPreferredLocation(this)));
+        findViewById(R.id.widget_add_button).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                addWidget();
+            }
+        });
+    }
+
+    private void addWidget() {
+        String location = mLocationView.getText().toString().trim();
+        boolean pinned = !TextUtils.isEmpty(location)
+                && !location.equals(Utility.getPreferredLocation(this));
+        TodayWidgetIntentService.setWidgetLocation(this, mAppWidgetId, pinned ? location : null);
+
+        // The host doesn't update a widget that has a configuration activity, so we have to
+        startService(new Intent(this, TodayWidgetIntentService.class)
+                .putExtra(TodayWidgetIntentService.EXTRA_INVALIDATE_IDS, new int[]{mAppWidgetId}));
+        if (pinned) {
+            // Fetch the new location's forecast, which updates the widget once it arrives
+            SunshineSyncAdapter.syncImmediately(this);
+        }
+
+        setResult(RESULT_OK, new Intent()
+                .putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, mAppWidgetId));
+        finish();
+    }
+}
@@ -20,11 +20,13 @@ import android.app.IntentService;
 import android.app.PendingIntent;
 import android.appwidget.AppWidgetManager;
 import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.database.Cursor;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.text.TextUtils;
 import android.util.DisplayMetrics;
 import android.util.TypedValue;
 import android.widget.RemoteViews;
@@ -34,21 +36,85 @@ import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * IntentService which handles updating all Today widgets with the latest data
+ *
+ * Most syncs don't change today's weather, so each widget's layout choice and a hash of what it
+ * was last sent are remembered, and a widget is only updated when its content actually changed.
+ * Start the service with {@link #EXTRA_INVALIDATE_IDS} when widgets were resized or re-added, so
+ * that their layout is chosen again and they are updated regardless.
+ *
+ * Widgets show the location in the settings unless {@link TodayWidgetConfigureActivity} pinned
+ * them to another one.  Today's weather for all the locations is read in one go and shared by
+ * the widgets showing the same location.
  */
 public class TodayWidgetIntentService extends IntentService {
+    /**
+     * Ids of widgets whose remembered layout and content must be forgotten before updating
+     */
+    public static final String EXTRA_INVALIDATE_IDS = "invalidate_ids";
+
+    private static final String PREFS_NAME = "today_widget";
+    private static final String PREF_LAYOUT_PREFIX = "layout_";
+    private static final String PREF_CONTENT_HASH_PREFIX = "content_hash_";
+
+    private static final String PREF_LOCATION_PREFIX = "location_";
+
+    // Layouts by width.  Widgets remember their layout's index in here rather than its resource
+    // id, since resource ids can change from one build of the app to the next.
+    private static final int[] LAYOUT_IDS = {
+            R.layout.widget_today_small,
+            R.layout.widget_today,
+            R.layout.widget_today_large
+    };
+    private static final int LAYOUT_SMALL = 0;
+    private static final int LAYOUT_DEFAULT = 1;
+    private static final int LAYOUT_LARGE = 2;
+
+    private static final String[] LOCATION_COLUMNS = {
+            WeatherContract.LocationEntry._ID,
+            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING
+    };
+    // these indices must match the projection
+    private static final int INDEX_LOCATION_ID = 0;
+    private static final int INDEX_LOCATION_SETTING = 1;
+
     private static final String[] FORECAST_COLUMNS = {
+            WeatherContract.WeatherEntry.COLUMN_LOC_KEY,
             WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
             WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
             WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
             WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
     };
     // these indices must match the projection
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_SHORT_DESC = 1;
-    private static final int INDEX_MAX_TEMP = 2;
-    private static final int INDEX_MIN_TEMP = 3;
+    private static final int INDEX_LOC_KEY = 0;
+    private static final int INDEX_WEATHER_ID = 1;
+    private static final int INDEX_SHORT_DESC = 2;
+    private static final int INDEX_MAX_TEMP = 3;
+    private static final int INDEX_MIN_TEMP = 4;
+
+    /**
+     * Today's weather at one location, as shown by every widget for that location
+     */
+    private static class TodayWeather {
+        final int mArtResourceId;
+        final String mDescription;
+        final String mHighText;
+        final String mLowText;
+
+        TodayWeather(Context context, Cursor data) {
+            mArtResourceId = Utility.getArtResourceForWeatherCondition(data.getInt(INDEX_WEATHER_ID));
+            mDescription = data.getString(INDEX_SHORT_DESC);
+            mHighText = Utility.formatTemperature(context, data.getDouble(INDEX_MAX_TEMP));
+            mLowText = Utility.formatTemperature(context, data.getDouble(INDEX_MIN_TEMP));
+        }
+    }
 
     public TodayWidgetIntentService() {
         super("TodayWidgetIntentService");
@@ -60,56 +126,71 @@ public class TodayWidgetIntentService extends IntentService {
         AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(this);
         int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(this,
                 TodayWidgetProvider.class));
-
-        // Get today's data from the ContentProvider
-        String location = Utility.getPreferredLocation(this);
-        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
-                location, System.currentTimeMillis());
-        Cursor data = getContentResolver().query(weatherForLocationUri, FORECAST_COLUMNS, null,
-                null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
-        if (data == null) {
-            return;
+        SharedPreferences widgetPrefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        int[] invalidateIds = intent == null ? null : intent.getIntArrayExtra(EXTRA_INVALIDATE_IDS);
+        if (invalidateIds != null) {
+            invalidate(this, invalidateIds);
         }
-        if (!data.moveToFirst()) {
-            data.close();
+        if (appWidgetIds.length == 0) {
             return;
         }
 
-        // Extract the weather data from the Cursor
-        int weatherId = data.getInt(INDEX_WEATHER_ID);
-        int weatherArtResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
-        String description = data.getString(INDEX_SHORT_DESC);
-        double maxTemp = data.getDouble(INDEX_MAX_TEMP);
-        double minTemp = data.getDouble(INDEX_MIN_TEMP);
-        String formattedMaxTemperature = Utility.formatTemperature(this, maxTemp);
-        String formattedMinTemperature = Utility.formatTemperature(this, minTemp);
-        data.close();
+        // Find the location each widget shows, then get today's data for all of them at once
+        String preferredLocation = Utility.getPreferredLocation(this);
+        String[] widgetLocations = new String[appWidgetIds.length];
+        Set<String> locations = new HashSet<String>();
+        for (int i = 0; i < appWidgetIds.length; i++) {
+            widgetLocations[i] = widgetPrefs.getString(PREF_LOCATION_PREFIX + appWidgetIds[i],
+                    preferredLocation);
+            locations.add(widgetLocations[i]);
+        }
+        Map<String, TodayWeather> todayWeather = queryTodayWeather(locations);
+
+        SharedPreferences.Editor editor = widgetPrefs.edit();
+        boolean changed = false;
 
         // Perform this loop procedure for each Today widget
-        for (int appWidgetId : appWidgetIds) {
-            // Find the correct layout based on the widget's width
-            int widgetWidth = getWidgetWidth(appWidgetManager, appWidgetId);
-            int defaultWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
-            int largeWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_large_width);
-            int layoutId;
-            if (widgetWidth >= largeWidth) {
-                layoutId = R.layout.widget_today_large;
-            } else if (widgetWidth >= defaultWidth) {
-                layoutId = R.layout.widget_today;
-            } else {
-                layoutId = R.layout.widget_today_small;
+        for (int i = 0; i < appWidgetIds.length; i++) {
+            int appWidgetId = appWidgetIds[i];
+            TodayWeather weather = todayWeather.get(widgetLocations[i]);
+            if (weather == null) {
+                // Not synced yet, keep showing whatever the widget shows
+                continue;
             }
+
+            // Find the correct layout based on the widget's width, unless we already have one.
+            // An index that is out of range, such as a resource id remembered by an older
+            // version, means choosing it again.
+            String layoutKey = PREF_LAYOUT_PREFIX + appWidgetId;
+            int layout = widgetPrefs.getInt(layoutKey, -1);
+            if (layout < 0 || layout >= LAYOUT_IDS.length) {
+                layout = getLayout(appWidgetManager, appWidgetId);
+                editor.putInt(layoutKey, layout);
+                changed = true;
+            }
+            int layoutId = LAYOUT_IDS[layout];
+
+            // Skip the update if the widget already shows exactly this
+            String contentHashKey = PREF_CONTENT_HASH_PREFIX + appWidgetId;
+            int contentHash = (layout + "|" + weather.mArtResourceId + "|"
+                    + weather.mDescription + "|" + weather.mHighText + "|"
+                    + weather.mLowText).hashCode();
+            if (widgetPrefs.contains(contentHashKey)
+                    && widgetPrefs.getInt(contentHashKey, 0) == contentHash) {
+                continue;
+            }
+
             RemoteViews views = new RemoteViews(getPackageName(), layoutId);
 
             // Add the data to the RemoteViews
-            views.setImageViewResource(R.id.widget_icon, weatherArtResourceId);
+            views.setImageViewResource(R.id.widget_icon, weather.mArtResourceId);
             // Content Descriptions for RemoteViews were only added in ICS MR1
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
-                setRemoteContentDescription(views, description);
+                setRemoteContentDescription(views, weather.mDescription);
             }
-            views.setTextViewText(R.id.widget_description, description);
-            views.setTextViewText(R.id.widget_high_temperature, formattedMaxTemperature);
-            views.setTextViewText(R.id.widget_low_temperature, formattedMinTemperature);
+            views.setTextViewText(R.id.widget_description, weather.mDescription);
+            views.setTextViewText(R.id.widget_high_temperature, weather.mHighText);
+            views.setTextViewText(R.id.widget_low_temperature, weather.mLowText);
 
             // Create an Intent to launch MainActivity
             Intent launchIntent = new Intent(this, MainActivity.class);
@@ -118,6 +199,141 @@ public class TodayWidgetIntentService extends IntentService {
 
             // Tell the AppWidgetManager to perform an update on the current app widget
             appWidgetManager.updateAppWidget(appWidgetId, views);
+            editor.putInt(contentHashKey, contentHash);
+            changed = true;
+        }
+        if (changed) {
+            editor.apply();
+        }
+    }
+
+    /**
+     * Reads today's weather for all of the locations with one query for their location rows and
+     * one for their weather, however many widgets there are.
+     *
+     * @return today's weather by location setting, for the locations that have any
+     */
+    private Map<String, TodayWeather> queryTodayWeather(Set<String> locations) {
+        Map<String, TodayWeather> todayWeather = new HashMap<String, TodayWeather>();
+        String placeholders = TextUtils.join(",", Collections.nCopies(locations.size(), "?"));
+
+        Map<Long, String> locationSettings = new HashMap<Long, String>();
+        Cursor locationData = getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                LOCATION_COLUMNS,
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " IN (" + placeholders + ")",
+                locations.toArray(new String[locations.size()]),
+                null);
+        if (locationData == null) {
+            return todayWeather;
+        }
+        while (locationData.moveToNext()) {
+            locationSettings.put(locationData.getLong(INDEX_LOCATION_ID),
+                    locationData.getString(INDEX_LOCATION_SETTING));
+        }
+        locationData.close();
+        if (locationSettings.isEmpty()) {
+            return todayWeather;
+        }
+
+        String[] selectionArgs = new String[locationSettings.size() + 1];
+        int i = 0;
+        for (Long locationId : locationSettings.keySet()) {
+            selectionArgs[i++] = Long.toString(locationId);
+        }
+        selectionArgs[i] = Long.toString(
+                WeatherContract.normalizeDate(System.currentTimeMillis()));
+        Cursor data = getContentResolver().query(WeatherContract.WeatherEntry.CONTENT_URI,
+                FORECAST_COLUMNS,
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " IN ("
+                        + TextUtils.join(",", Collections.nCopies(locationSettings.size(), "?"))
+                        + ") AND " + WeatherContract.WeatherEntry.COLUMN_DATE + " >= ?",
+                selectionArgs,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (data == null) {
+            return todayWeather;
+        }
+        // Rows come by date, so the first one for each location is today's
+        while (data.moveToNext()) {
+            String location = locationSettings.get(data.getLong(INDEX_LOC_KEY));
+            if (!todayWeather.containsKey(location)) {
+                todayWeather.put(location, new TodayWeather(this, data));
+            }
+        }
+        data.close();
+        return todayWeather;
+    }
+
+    /**
+     * Pins a widget to a location, instead of the one chosen in the settings.
+     *
+     * @param location The location setting, or null to follow the settings
+     */
+    static void setWidgetLocation(Context context, int appWidgetId, String location) {
+        SharedPreferences.Editor editor =
+                context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit();
+        if (location == null) {
+            editor.remove(PREF_LOCATION_PREFIX + appWidgetId);
+        } else {
+            editor.putString(PREF_LOCATION_PREFIX + appWidgetId, location);
+        }
+        editor.apply();
+    }
+
+    /**
+     * @return the distinct locations widgets are pinned to, which need syncing besides the
+     * one chosen in the settings
+     */
+    public static Set<String> getPinnedLocations(Context context) {
+        Set<String> locations = new HashSet<String>();
+        Map<String, ?> prefs =
+                context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getAll();
+        for (Map.Entry<String, ?> entry : prefs.entrySet()) {
+            if (entry.getKey().startsWith(PREF_LOCATION_PREFIX)) {
+                locations.add((String) entry.getValue());
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Forgets the layout and content remembered for widgets, so that they are laid out and
+     * updated again.
+     */
+    static void invalidate(Context context, int[] appWidgetIds) {
+        SharedPreferences.Editor editor =
+                context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit();
+        for (int appWidgetId : appWidgetIds) {
+            editor.remove(PREF_LAYOUT_PREFIX + appWidgetId);
+            editor.remove(PREF_CONTENT_HASH_PREFIX + appWidgetId);
+        }
+        editor.apply();
+    }
+
+    /**
+     * Forgets everything stored for widgets that were deleted, including their location.
+     */
+    static void forget(Context context, int[] appWidgetIds) {
+        SharedPreferences.Editor editor =
+                context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit();
+        for (int appWidgetId : appWidgetIds) {
+            editor.remove(PREF_LAYOUT_PREFIX + appWidgetId);
+            editor.remove(PREF_CONTENT_HASH_PREFIX + appWidgetId);
+            editor.remove(PREF_LOCATION_PREFIX + appWidgetId);
+        }
+        editor.apply();
+    }
+
+    private int getLayout(AppWidgetManager appWidgetManager, int appWidgetId) {
+        int widgetWidth = getWidgetWidth(appWidgetManager, appWidgetId);
+        int defaultWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
+        int largeWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_large_width);
+        if (widgetWidth >= largeWidth) {
+            return LAYOUT_LARGE;
+        } else if (widgetWidth >= defaultWidth) {
+            return LAYOUT_DEFAULT;
+        } else {
+            return LAYOUT_SMALL;
         }
     }
 
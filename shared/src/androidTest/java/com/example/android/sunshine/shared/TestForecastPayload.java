@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import android.test.AndroidTestCase;
+
+import java.util.Arrays;
+
+/*
+    Checks that a ForecastPayload survives encoding, and that fromBytes rejects bytes of another
+    version or of the wrong length rather than misreading them.
+ */
+public class TestForecastPayload extends AndroidTestCase {
+    private static final int FIRST_JULIAN_DAY = 2457388;
+
+    public void testRoundTrip() {
+        ForecastPayload forecast = createForecast();
+        ForecastPayload decoded = ForecastPayload.fromBytes(forecast.toBytes());
+        assertNotNull("Error: the payload couldn't be decoded", decoded);
+        assertTrue("Error: the payload changed when decoded",
+                Arrays.equals(forecast.toBytes(), decoded.toBytes()));
+        assertEquals("Error: the Julian day wasn't decoded", FIRST_JULIAN_DAY + 1,
+                decoded.getJulianDay(1));
+        assertEquals("Error: the weather id wasn't decoded", 600, decoded.getWeatherId(1));
+        assertEquals("Error: the high wasn't decoded", 2, decoded.getHigh(1));
+        assertEquals("Error: the low wasn't decoded", -3, decoded.getLow(1));
+        assertEquals("Error: the hash changed when decoded", forecast.getContentHash(),
+                decoded.getContentHash());
+    }
+
+    public void testUnknownVersionIsRejected() {
+        byte[] newerVersion = createForecast().toBytes();
+        newerVersion[0] = ForecastPayload.VERSION + 1;
+        assertNull("Error: a payload of an unknown version was decoded",
+                ForecastPayload.fromBytes(newerVersion));
+    }
+
+    public void testWrongLengthIsRejected() {
+        byte[] bytes = createForecast().toBytes();
+        assertNull("Error: a truncated payload was decoded",
+                ForecastPayload.fromBytes(Arrays.copyOf(bytes, bytes.length - 1)));
+        assertNull("Error: a payload with only its header was decoded",
+                ForecastPayload.fromBytes(Arrays.copyOf(bytes, 2)));
+        assertNull("Error: a payload with trailing bytes was decoded",
+                ForecastPayload.fromBytes(Arrays.copyOf(bytes, bytes.length + 1)));
+        assertNull("Error: an empty payload was decoded", ForecastPayload.fromBytes(new byte[0]));
+        assertNull("Error: a missing payload was decoded", ForecastPayload.fromBytes(null));
+
+        byte[] tooManyDays = bytes.clone();
+        tooManyDays[1] = ForecastPayload.MAX_DAYS + 1;
+        assertNull("Error: a payload of too many days was decoded",
+                ForecastPayload.fromBytes(tooManyDays));
+    }
+
+    private static ForecastPayload createForecast() {
+        return new ForecastPayload(
+                new int[]{FIRST_JULIAN_DAY, FIRST_JULIAN_DAY + 1},
+                new int[]{800, 600},
+                new int[]{25, 2},
+                new int[]{16, -3});
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * The forecast the phone sends to the wearable, encoded as a few bytes per day so that the
+ * whole forecast fits in one small data item.
+ *
+ * The encoding starts with a version byte, so that a wearable running an older version of the
+ * app can tell a forecast it doesn't understand.  Version 1 is the version byte, a byte with
+ * the number of days, then for each day its Julian day as an int, its weather condition id as
+ * a short, and its high and low as shorts, in whole degrees of the units the user chose.
+ */
+public final class ForecastPayload {
+    /**
+     * Key of the encoded forecast in the data item's DataMap.
+     */
+    public static final String KEY_FORECAST = "forecast";
+
+    public static final int VERSION = 1;
+    public static final int MAX_DAYS = 14;
+
+    private static final int HEADER_BYTES = 2;
+    private static final int DAY_BYTES = 10;
+
+    private final int[] mJulianDays;
+    private final int[] mWeatherIds;
+    private final int[] mHighs;
+    private final int[] mLows;
+
+    /**
+     * @param julianDays Julian day of each day, in the order they are shown
+     * @param weatherIds Weather condition id of each day
+     * @param highs High of each day, in whole degrees
+     * @param lows Low of each day, in whole degrees
+     */
+    public ForecastPayload(int[] julianDays, int[] weatherIds, int[] highs, int[] lows) {
+        if (julianDays.length > MAX_DAYS || weatherIds.length != julianDays.length
+                || highs.length != julianDays.length || lows.length != julianDays.length) {
+            throw new IllegalArgumentException("Bad forecast of " + julianDays.length + " days");
+        }
+        mJulianDays = julianDays;
+        mWeatherIds = weatherIds;
+        mHighs = highs;
+        mLows = lows;
+    }
+
+    public int getDayCount() {
+        return mJulianDays.length;
+    }
+
+    public int getJulianDay(int day) {
+        return mJulianDays[day];
+    }
+
+    public int getWeatherId(int day) {
+        return mWeatherIds[day];
+    }
+
+    public int getHigh(int day) {
+        return mHighs[day];
+    }
+
+    public int getLow(int day) {
+        return mLows[day];
+    }
+
+    /**
+     * @return the index of the given Julian day in the forecast, or -1 if it isn't in it
+     */
+    public int indexOfJulianDay(int julianDay) {
+        for (int i = 0; i < mJulianDays.length; i++) {
+            if (mJulianDays[i] == julianDay) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes =
+                new ByteArrayOutputStream(HEADER_BYTES + DAY_BYTES * mJulianDays.length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(VERSION);
+            out.writeByte(mJulianDays.length);
+            for (int i = 0; i < mJulianDays.length; i++) {
+                out.writeInt(mJulianDays[i]);
+                out.writeShort(mWeatherIds[i]);
+                out.writeShort(mHighs[i]);
+                out.writeShort(mLows[i]);
+            }
+        } catch (IOException e) {
+            // Writing to memory doesn't fail
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the forecast, or null if the bytes are from a version this doesn't understand or
+     * aren't a forecast at all
+     */
+    public static ForecastPayload fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length < HEADER_BYTES || bytes[0] != VERSION) {
+            return null;
+        }
+        int days = bytes[1];
+        if (days < 0 || days > MAX_DAYS || bytes.length != HEADER_BYTES + DAY_BYTES * days) {
+            return null;
+        }
+        int[] julianDays = new int[days];
+        int[] weatherIds = new int[days];
+        int[] highs = new int[days];
+        int[] lows = new int[days];
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, HEADER_BYTES,
+                bytes.length - HEADER_BYTES));
+        try {
+            for (int i = 0; i < days; i++) {
+                julianDays[i] = in.readInt();
+                weatherIds[i] = in.readShort();
+                highs[i] = in.readShort();
+                lows[i] = in.readShort();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return new ForecastPayload(julianDays, weatherIds, highs, lows);
+    }
+
+    /**
+     * @return a hash of the whole forecast, to tell whether it changed since it was last sent
+     */
+    public long getContentHash() {
+        CRC32 crc = new CRC32();
+        crc.update(toBytes());
+        return crc.getValue();
+    }
+
+    /**
+     * @return a hash of one day of the forecast, to tell whether that day changed
+     */
+    public long getDayHash(int day) {
+        CRC32 crc = new CRC32();
+        crc.update(toBytes(), HEADER_BYTES + DAY_BYTES * day, DAY_BYTES);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.util.Arrays;
+
+/**
+ * Maps the weather condition ids returned by OpenWeatherMap to Sunshine's icons, artwork,
+ * descriptions and background images.  Used by both the phone app and the wearable so that
+ * the two always agree.
+ *
+ * Every mapping is a dense table indexed by condition id and built once when the class is
+ * loaded, so a lookup is a bounds check plus an array read.
+ */
+public final class WeatherConditions {
+    // Based on weather code data found at:
+    // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+    private static final int MIN_CONDITION_ID = 200;
+    private static final int MAX_CONDITION_ID = 962;
+
+    /**
+     * Returned by {@link #getGroup(int)} when a condition has no icon or artwork.
+     */
+    public static final int GROUP_NONE = -1;
+
+    // Conditions that share an icon, artwork and background image.  These index the
+    // per-group tables below.
+    private static final int GROUP_STORM = 0;
+    private static final int GROUP_LIGHT_RAIN = 1;
+    private static final int GROUP_RAIN = 2;
+    private static final int GROUP_SNOW = 3;
+    private static final int GROUP_FOG = 4;
+    private static final int GROUP_DUST_STORM = 5;
+    private static final int GROUP_CLEAR = 6;
+    private static final int GROUP_LIGHT_CLOUDS = 7;
+    private static final int GROUP_CLOUDS = 8;
+
+    /**
+     * Number of distinct condition groups, i.e. the upper bound of {@link #getGroup(int)}.
+     */
+    public static final int GROUP_COUNT = 9;
+
+    private static final int[] GROUP_ICON_RESOURCES = {
+            R.drawable.ic_storm,
+            R.drawable.ic_light_rain,
+            R.drawable.ic_rain,
+            R.drawable.ic_snow,
+            R.drawable.ic_fog,
+            R.drawable.ic_storm,
+            R.drawable.ic_clear,
+            R.drawable.ic_light_clouds,
+            R.drawable.ic_cloudy
+    };
+
+    private static final int[] GROUP_ART_RESOURCES = {
+            R.drawable.art_storm,
+            R.drawable.art_light_rain,
+            R.drawable.art_rain,
+            R.drawable.art_snow,
+            R.drawable.art_fog,
+            R.drawable.art_storm,
+            R.drawable.art_clear,
+            R.drawable.art_light_clouds,
+            R.drawable.art_clouds
+    };
+
+    // Names substituted into an art pack's url format, e.g. art_%s.png
+    private static final String[] GROUP_ART_NAMES = {
+            "storm",
+            "light_rain",
+            "rain",
+            "snow",
+            "fog",
+            "storm",
+            "clear",
+            "light_clouds",
+            "clouds"
+    };
+
+    private static final String[] GROUP_IMAGE_URLS = {
+            "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg"
+    };
+
+    private static final byte[] sGroups = new byte[MAX_CONDITION_ID - MIN_CONDITION_ID + 1];
+    private static final int[] sStringIds = new int[MAX_CONDITION_ID - MIN_CONDITION_ID + 1];
+
+    static {
+        Arrays.fill(sGroups, (byte) GROUP_NONE);
+
+        // Ranges are applied in order and never overwrite an earlier one, the same way the
+        // original if/else chain matched.  That is why 761 is fog rather than a dust storm.
+        mapGroup(200, 232, GROUP_STORM);
+        mapGroup(300, 321, GROUP_LIGHT_RAIN);
+        mapGroup(500, 504, GROUP_RAIN);
+        mapGroup(511, 511, GROUP_SNOW);
+        mapGroup(520, 531, GROUP_RAIN);
+        mapGroup(600, 622, GROUP_SNOW);
+        mapGroup(701, 761, GROUP_FOG);
+        mapGroup(761, 761, GROUP_DUST_STORM);
+        mapGroup(781, 781, GROUP_DUST_STORM);
+        mapGroup(800, 800, GROUP_CLEAR);
+        mapGroup(801, 801, GROUP_LIGHT_CLOUDS);
+        mapGroup(802, 804, GROUP_CLOUDS);
+
+        mapString(200, 232, R.string.condition_2xx);
+        mapString(300, 321, R.string.condition_3xx);
+        mapString(500, R.string.condition_500);
+        mapString(501, R.string.condition_501);
+        mapString(502, R.string.condition_502);
+        mapString(503, R.string.condition_503);
+        mapString(504, R.string.condition_504);
+        mapString(511, R.string.condition_511);
+        mapString(520, R.string.condition_520);
+        mapString(531, R.string.condition_531);
+        mapString(600, R.string.condition_600);
+        mapString(601, R.string.condition_601);
+        mapString(602, R.string.condition_602);
+        mapString(611, R.string.condition_611);
+        mapString(612, R.string.condition_612);
+        mapString(615, R.string.condition_615);
+        mapString(616, R.string.condition_616);
+        mapString(620, R.string.condition_620);
+        mapString(621, R.string.condition_621);
+        mapString(622, R.string.condition_622);
+        mapString(701, R.string.condition_701);
+        mapString(711, R.string.condition_711);
+        mapString(721, R.string.condition_721);
+        mapString(731, R.string.condition_731);
+        mapString(741, R.string.condition_741);
+        mapString(751, R.string.condition_751);
+        mapString(761, R.string.condition_761);
+        mapString(762, R.string.condition_762);
+        mapString(771, R.string.condition_771);
+        mapString(781, R.string.condition_781);
+        mapString(800, R.string.condition_800);
+        mapString(801, R.string.condition_801);
+        mapString(802, R.string.condition_802);
+        mapString(803, R.string.condition_803);
+        mapString(804, R.string.condition_804);
+        mapString(900, R.string.condition_900);
+        mapString(901, R.string.condition_901);
+        mapString(902, R.string.condition_902);
+        mapString(903, R.string.condition_903);
+        mapString(904, R.string.condition_904);
+        mapString(905, R.string.condition_905);
+        mapString(906, R.string.condition_906);
+        mapString(951, R.string.condition_951);
+        mapString(952, R.string.condition_952);
+        mapString(953, R.string.condition_953);
+        mapString(954, R.string.condition_954);
+        mapString(955, R.string.condition_955);
+        mapString(956, R.string.condition_956);
+        mapString(957, R.string.condition_957);
+        mapString(958, R.string.condition_958);
+        mapString(959, R.string.condition_959);
+        mapString(960, R.string.condition_960);
+        mapString(961, R.string.condition_961);
+        mapString(962, R.string.condition_962);
+    }
+
+    private WeatherConditions() {
+    }
+
+    private static void mapGroup(int fromId, int toId, int group) {
+        for (int id = fromId; id <= toId; id++) {
+            if (sGroups[id - MIN_CONDITION_ID] == GROUP_NONE) {
+                sGroups[id - MIN_CONDITION_ID] = (byte) group;
+            }
+        }
+    }
+
+    private static void mapString(int fromId, int toId, int stringId) {
+        for (int id = fromId; id <= toId; id++) {
+            sStringIds[id - MIN_CONDITION_ID] = stringId;
+        }
+    }
+
+    private static void mapString(int weatherId, int stringId) {
+        mapString(weatherId, weatherId, stringId);
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return the group of conditions sharing the same artwork, in the range
+     * [0, {@link #GROUP_COUNT}), or {@link #GROUP_NONE} if no relation is found.
+     */
+    public static int getGroup(int weatherId) {
+        if (weatherId < MIN_CONDITION_ID || weatherId > MAX_CONDITION_ID) {
+            return GROUP_NONE;
+        }
+        return sGroups[weatherId - MIN_CONDITION_ID];
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return resource id for the corresponding icon. -1 if no relation is found.
+     */
+    public static int getIconResource(int weatherId) {
+        int group = getGroup(weatherId);
+        return group == GROUP_NONE ? -1 : GROUP_ICON_RESOURCES[group];
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return resource id for the corresponding artwork. -1 if no relation is found.
+     */
+    public static int getArtResource(int weatherId) {
+        int group = getGroup(weatherId);
+        return group == GROUP_NONE ? -1 : GROUP_ART_RESOURCES[group];
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return the name to substitute into an art pack url format. null if no relation is found.
+     */
+    public static String getArtName(int weatherId) {
+        int group = getGroup(weatherId);
+        return group == GROUP_NONE ? null : GROUP_ART_NAMES[group];
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return A string URL to an appropriate background image or null if no mapping is found
+     */
+    public static String getImageUrl(int weatherId) {
+        int group = getGroup(weatherId);
+        return group == GROUP_NONE ? null : GROUP_IMAGE_URLS[group];
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return string resource id describing the condition. 0 if no relation is found.
+     */
+    public static int getStringResource(int weatherId) {
+        if (weatherId < MIN_CONDITION_ID || weatherId > MAX_CONDITION_ID) {
+            return 0;
+        }
+        return sStringIds[weatherId - MIN_CONDITION_ID];
+    }
+}
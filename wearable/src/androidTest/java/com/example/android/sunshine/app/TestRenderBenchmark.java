@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Calendar;
+import java.util.Locale;
+
+/*
+    Draws thousands of watch face frames into an offscreen Canvas in each mode, the way
+    SunshineWatchFace.Engine.onDraw does, and fails if the time, the allocations or the text
+    measured per frame regress past the thresholds below.
+
+    The engine itself only runs inside the wallpaper service, so the benchmark drives
+    WatchFaceRenderer, which is all onDraw calls.  Frames are a second apart, starting on the
+    hour, so a run sees the minute change every 60 frames without the hour changing.  Results
+    are logged under the LOG_TAG below.
+ */
+public class TestRenderBenchmark extends AndroidTestCase {
+    private static final String LOG_TAG = TestRenderBenchmark.class.getSimpleName();
+
+    private static final int SURFACE_SIZE = 320;
+    private static final int ICON_SIZE = 60;
+    private static final int WARMUP_FRAMES = 60;
+    private static final int FRAMES = 3000;
+    private static final long FRAME_MILLIS = 1000;
+
+    // A quarter of a frame at 60fps, leaving the rest to the system
+    private static final long MAX_NANOS_PER_FRAME = 1000000000L / 60 / 4;
+    private static final float MAX_ALLOCATIONS_PER_FRAME = 0;
+    // The time is only measured when its digits change: once a minute, or once a second
+    private static final float MAX_MEASURES_PER_FRAME_MINUTES = 1.1f / 60;
+    private static final float MAX_MEASURES_PER_FRAME_SECONDS = 1;
+
+    private WatchFaceRenderer mRenderer;
+    private Canvas mCanvas;
+    private long mStartMillis;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mRenderer = new WatchFaceRenderer(getContext().getResources());
+        mRenderer.setSurfaceSize(SURFACE_SIZE, SURFACE_SIZE);
+        mRenderer.setChinSize(0);
+        Bitmap icon = Bitmap.createBitmap(ICON_SIZE, ICON_SIZE, Bitmap.Config.ARGB_8888);
+        mRenderer.setWeather("25\u00b0", "16\u00b0", icon);
+        mRenderer.setForecast(new String[]{"MON", "TUE", "WED"},
+                new String[]{"20\u00b0", "21\u00b0", "22\u00b0"},
+                new String[]{"10\u00b0", "11\u00b0", "12\u00b0"},
+                new Bitmap[]{icon, icon, icon});
+        mCanvas = new Canvas(Bitmap.createBitmap(SURFACE_SIZE, SURFACE_SIZE,
+                Bitmap.Config.ARGB_8888));
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        mStartMillis = calendar.getTimeInMillis();
+    }
+
+    public void testInteractive() {
+        check(run("interactive"), MAX_MEASURES_PER_FRAME_MINUTES);
+    }
+
+    public void testInteractiveWithSeconds() {
+        mRenderer.setShowSeconds(true);
+        check(run("interactive with seconds"), MAX_MEASURES_PER_FRAME_SECONDS);
+    }
+
+    public void testForecastPage() {
+        mRenderer.nextPage();
+        check(run("forecast page"), MAX_MEASURES_PER_FRAME_MINUTES);
+    }
+
+    public void testAmbient() {
+        mRenderer.setAmbient(true);
+        check(run("ambient"), MAX_MEASURES_PER_FRAME_MINUTES);
+    }
+
+    public void testLowBitAmbient() {
+        mRenderer.setLowBitAmbient(true);
+        mRenderer.setAmbient(true);
+        check(run("low-bit ambient"), MAX_MEASURES_PER_FRAME_MINUTES);
+    }
+
+    private static class Result {
+        final String mMode;
+        final float mNanosPerFrame;
+        final float mAllocationsPerFrame;
+        final float mMeasuresPerFrame;
+
+        Result(String mode, float nanosPerFrame, float allocationsPerFrame,
+               float measuresPerFrame) {
+            mMode = mode;
+            mNanosPerFrame = nanosPerFrame;
+            mAllocationsPerFrame = allocationsPerFrame;
+            mMeasuresPerFrame = measuresPerFrame;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%s: %d frames, %.0fns per frame, %.3f allocations per frame, "
+                            + "%.3f text measures per frame",
+                    mMode, FRAMES, mNanosPerFrame, mAllocationsPerFrame, mMeasuresPerFrame);
+        }
+    }
+
+    // Times the frames first, then draws them again counting allocations, which slows drawing
+    @SuppressWarnings("deprecation")
+    private Result run(String mode) {
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            mRenderer.draw(mCanvas, mStartMillis + i * FRAME_MILLIS);
+        }
+
+        int measuresBefore = mRenderer.getTextMeasureCount();
+        long startNanos = System.nanoTime();
+        drawFrames();
+        long elapsedNanos = System.nanoTime() - startNanos;
+        int measures = mRenderer.getTextMeasureCount() - measuresBefore;
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        try {
+            drawFrames();
+        } finally {
+            Debug.stopAllocCounting();
+        }
+        int allocations = Debug.getThreadAllocCount();
+
+        Result result = new Result(mode, (float) elapsedNanos / FRAMES,
+                (float) allocations / FRAMES, (float) measures / FRAMES);
+        Log.i(LOG_TAG, result.toString());
+        return result;
+    }
+
+    private void drawFrames() {
+        for (int i = 0; i < FRAMES; i++) {
+            mRenderer.draw(mCanvas, mStartMillis + i * FRAME_MILLIS);
+        }
+    }
+
+    private static void check(Result result, float maxMeasuresPerFrame) {
+        assertTrue("Error: " + result.mMode + " frames took " + result.mNanosPerFrame
+                        + "ns, over the " + MAX_NANOS_PER_FRAME + "ns threshold",
+                result.mNanosPerFrame <= MAX_NANOS_PER_FRAME);
+        assertTrue("Error: " + result.mMode + " frames allocated " + result.mAllocationsPerFrame
+                        + " objects each, over the " + MAX_ALLOCATIONS_PER_FRAME + " threshold",
+                result.mAllocationsPerFrame <= MAX_ALLOCATIONS_PER_FRAME);
+        assertTrue("Error: " + result.mMode + " frames measured " + result.mMeasuresPerFrame
+                        + " texts each, over the " + maxMeasuresPerFrame + " threshold",
+                result.mMeasuresPerFrame <= maxMeasuresPerFrame);
+    }
+}
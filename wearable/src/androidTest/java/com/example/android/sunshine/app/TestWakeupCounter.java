@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+
+/*
+    Checks that WakeupCounter scales its count to an hour, and starts counting again once it
+    has reported.
+ */
+public class TestWakeupCounter extends AndroidTestCase {
+    private static final long START_MILLIS = 1000000;
+    private static final long MINUTE_MILLIS = 60 * 1000;
+
+    public void testWakeupsPerHour() {
+        WakeupCounter counter = new WakeupCounter("Test");
+        // A wakeup a second for ten minutes
+        for (long t = 0; t < 10 * MINUTE_MILLIS; t += 1000) {
+            counter.onWakeup(START_MILLIS + t);
+        }
+        assertEquals("Error: wakeups weren't counted", 600, counter.getWakeups());
+        assertEquals("Error: the rate wasn't scaled to an hour", 3600f,
+                counter.getWakeupsPerHour(START_MILLIS + 10 * MINUTE_MILLIS), 1f);
+    }
+
+    public void testCountRestartsAfterAnHour() {
+        WakeupCounter counter = new WakeupCounter("Test");
+        // A wakeup a minute for a little over an hour
+        for (int minute = 0; minute <= 61; minute++) {
+            counter.onWakeup(START_MILLIS + minute * MINUTE_MILLIS);
+        }
+        assertEquals("Error: the count didn't restart after an hour's report",
+                1, counter.getWakeups());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+
+import java.util.Calendar;
+
+/*
+    Checks that WatchFaceRenderer doesn't allocate while drawing frames within the same hour,
+    once the first frame has laid out the time and date and drawn its layer, that the weather
+    is drawn again when it changes, and that paging through the forecast is just drawing.
+ */
+public class TestWatchFaceRenderer extends AndroidTestCase {
+    private static final int SURFACE_SIZE = 320;
+    private static final int ICON_SIZE = 60;
+    private static final int FRAMES = 120;
+    private static final long FRAME_MILLIS = 1000;
+
+    private WatchFaceRenderer mRenderer;
+    private Bitmap mSurface;
+    private Canvas mCanvas;
+    private long mStartMillis;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mRenderer = new WatchFaceRenderer(getContext().getResources());
+        mRenderer.setSurfaceSize(SURFACE_SIZE, SURFACE_SIZE);
+        mRenderer.setChinSize(0);
+        mRenderer.setWeather("25\u00b0", "16\u00b0",
+                Bitmap.createBitmap(ICON_SIZE, ICON_SIZE, Bitmap.Config.ARGB_8888));
+        mSurface = Bitmap.createBitmap(SURFACE_SIZE, SURFACE_SIZE, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mSurface);
+
+        // Start on the hour, so that all the frames drawn fall within it
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        mStartMillis = calendar.getTimeInMillis();
+    }
+
+    public void testInteractiveDrawDoesNotAllocate() {
+        mRenderer.setAmbient(false);
+        assertEquals("Error: drawing an interactive frame allocated", 0, countDrawAllocations());
+    }
+
+    public void testSecondsDrawDoesNotAllocate() {
+        mRenderer.setShowSeconds(true);
+        assertEquals("Error: drawing a frame with seconds allocated", 0, countDrawAllocations());
+    }
+
+    public void testAmbientDrawDoesNotAllocate() {
+        mRenderer.setAmbient(true);
+        assertEquals("Error: drawing an ambient frame allocated", 0, countDrawAllocations());
+    }
+
+    public void testLowBitAmbientDrawDoesNotAllocate() {
+        mRenderer.setLowBitAmbient(true);
+        mRenderer.setAmbient(true);
+        assertEquals("Error: drawing a low-bit ambient frame allocated", 0, countDrawAllocations());
+    }
+
+    public void testPagingDoesNotAllocate() {
+        Bitmap icon = Bitmap.createBitmap(ICON_SIZE, ICON_SIZE, Bitmap.Config.ARGB_8888);
+        mRenderer.setForecast(new String[]{"MON", "TUE", "WED", "THU"},
+                new String[]{"20\u00b0", "21\u00b0", "22\u00b0", "23\u00b0"},
+                new String[]{"10\u00b0", "11\u00b0", "12\u00b0", "13\u00b0"},
+                new Bitmap[]{icon, icon, null, icon});
+        assertEquals("Error: today and four days should make three pages",
+                3, mRenderer.getPageCount());
+
+        mRenderer.draw(mCanvas, mStartMillis);
+        Bitmap today = mSurface.copy(Bitmap.Config.ARGB_8888, false);
+        mRenderer.nextPage();
+        assertEquals("Error: paging drew a frame that allocated", 0, countDrawAllocations());
+        assertFalse("Error: the forecast page wasn't drawn", today.sameAs(mSurface));
+
+        mRenderer.nextPage();
+        mRenderer.nextPage();
+        assertEquals("Error: paging didn't come back to today", 0, mRenderer.getPage());
+    }
+
+    public void testWeatherChangeRedrawsLayer() {
+        mRenderer.draw(mCanvas, mStartMillis);
+        Bitmap before = mSurface.copy(Bitmap.Config.ARGB_8888, false);
+
+        Bitmap icon = Bitmap.createBitmap(ICON_SIZE, ICON_SIZE, Bitmap.Config.ARGB_8888);
+        icon.eraseColor(Color.RED);
+        mRenderer.setWeather("31\u00b0", "22\u00b0", icon);
+        mRenderer.draw(mCanvas, mStartMillis);
+
+        assertFalse("Error: the new weather wasn't drawn", before.sameAs(mSurface));
+    }
+
+    // Draws a frame a second for FRAMES seconds, after a first one that is allowed to allocate
+    @SuppressWarnings("deprecation")
+    private int countDrawAllocations() {
+        mRenderer.draw(mCanvas, mStartMillis);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        try {
+            for (int i = 1; i <= FRAMES; i++) {
+                mRenderer.draw(mCanvas, mStartMillis + i * FRAME_MILLIS);
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+        return Debug.getThreadAllocCount();
+    }
+}
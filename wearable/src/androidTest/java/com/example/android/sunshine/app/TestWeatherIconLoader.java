@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Checks that WeatherIconLoader decodes icons at the size asked for, hands out the cached icon
+    straight away the next time the same condition is loaded, and calls nothing back once it
+    has quit.
+ */
+public class TestWeatherIconLoader extends AndroidTestCase {
+    private static final int ICON_SIZE = 60;
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private WeatherIconLoader mLoader;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mLoader = new WeatherIconLoader(getContext().getResources(), ICON_SIZE);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mLoader.quit();
+        super.tearDown();
+    }
+
+    public void testIconIsDecodedAtSizeAndCached() throws Exception {
+        Bitmap icon = load(R.drawable.art_storm);
+        assertNotNull("Error: the icon wasn't decoded", icon);
+        assertEquals("Error: the icon was decoded at the wrong width", ICON_SIZE, icon.getWidth());
+
+        final Bitmap[] cached = new Bitmap[1];
+        mLoader.load(R.drawable.art_storm, new WeatherIconLoader.Callback() {
+            @Override
+            public void onIconLoaded(Bitmap icon) {
+                cached[0] = icon;
+            }
+        });
+        assertSame("Error: the cached icon wasn't returned straight away", icon, cached[0]);
+    }
+
+    public void testUnknownConditionLoadsNoIcon() throws Exception {
+        assertNull("Error: an icon was loaded for an unknown condition", load(-1));
+    }
+
+    public void testNoCallbackAfterQuit() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mLoader.loadAll(new int[]{R.drawable.art_fog, R.drawable.art_rain},
+                new WeatherIconLoader.IconsCallback() {
+                    @Override
+                    public void onIconsLoaded(Bitmap[] icons) {
+                        latch.countDown();
+                    }
+                });
+        mLoader.quit();
+        assertFalse("Error: the icons were passed on after the loader quit",
+                latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private Bitmap load(int artResourceId) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Bitmap[] result = new Bitmap[1];
+        mLoader.load(artResourceId, new WeatherIconLoader.Callback() {
+            @Override
+            public void onIconLoaded(Bitmap icon) {
+                result[0] = icon;
+                latch.countDown();
+            }
+        });
+        assertTrue("Error: the icon wasn't loaded in time",
+                latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        return result[0];
+    }
+}
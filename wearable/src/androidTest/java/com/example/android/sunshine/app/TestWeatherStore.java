@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.shared.ForecastPayload;
+
+/*
+    Checks that the forecast saved by WeatherStore is what the watch face reads back when it
+    starts, and that saving the same forecast again is skipped.  The payload's own encoding is
+    tested in the shared module.
+ */
+public class TestWeatherStore extends AndroidTestCase {
+    public void testSaveAndLoad() {
+        int today = WeatherStore.getTodaysJulianDay();
+        ForecastPayload forecast = createForecast(today, 800);
+        WeatherStore.save(getContext(), forecast);
+        ForecastPayload loaded = WeatherStore.loadForecast(getContext());
+        assertNotNull("Error: the saved forecast wasn't loaded", loaded);
+        assertEquals("Error: the wrong weather was loaded for today",
+                new WeatherStore.Weather(800, "25\u00b0", "16\u00b0"),
+                WeatherStore.getTodaysWeather(loaded));
+
+        assertFalse("Error: the same forecast was saved again",
+                WeatherStore.save(getContext(), forecast));
+        assertTrue("Error: a new forecast wasn't saved",
+                WeatherStore.save(getContext(), createForecast(today, 500)));
+        assertEquals("Error: the new forecast wasn't loaded", 500,
+                WeatherStore.loadForecast(getContext()).getWeatherId(0));
+    }
+
+    public void testNoWeatherForMissingDay() {
+        ForecastPayload forecast = createForecast(WeatherStore.getTodaysJulianDay() - 2, 800);
+        assertNull("Error: weather was found for a day the forecast doesn't include",
+                WeatherStore.getTodaysWeather(forecast));
+    }
+
+    private static ForecastPayload createForecast(int firstJulianDay, int firstWeatherId) {
+        return new ForecastPayload(
+                new int[]{firstJulianDay, firstJulianDay + 1},
+                new int[]{firstWeatherId, 600},
+                new int[]{25, 2},
+                new int[]{16, -3});
+    }
+}
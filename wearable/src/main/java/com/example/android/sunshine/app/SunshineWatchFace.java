@@ -20,103 +20,129 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.res.Resources;
+import android.content.SharedPreferences;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.Rect;
-import android.graphics.Typeface;
 import android.os.Bundle;
-import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
+import android.os.Handler;
+import android.os.Message;
+import android.os.SystemClock;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
-import android.util.Log;
+import android.text.format.Time;
 import android.view.Gravity;
 import android.view.SurfaceHolder;
+import android.view.WindowInsets;
 
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.wearable.DataApi;
-import com.google.android.gms.wearable.DataEvent;
-import com.google.android.gms.wearable.DataEventBuffer;
-import com.google.android.gms.wearable.DataMap;
-import com.google.android.gms.wearable.DataMapItem;
-import com.google.android.gms.wearable.Wearable;
+import com.example.android.sunshine.shared.ForecastPayload;
+import com.example.android.sunshine.shared.WeatherConditions;
 
+import java.lang.ref.WeakReference;
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.util.Date;
 import java.util.TimeZone;
 
 /**
- * Digital watch face with seconds. In ambient mode, the seconds aren't displayed. On devices with
- * low-bit ambient mode, the text is drawn without anti-aliasing in ambient mode.
+ * Digital watch face with optional seconds. In ambient mode, the seconds aren't displayed. On
+ * devices with low-bit ambient mode, the text is drawn without anti-aliasing in ambient mode.
  */
 public class SunshineWatchFace extends CanvasWatchFaceService {
-    private static final Typeface NORMAL_TYPEFACE =
-            Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
-
-    private static final String TAG = SunshineWatchFace.class.getSimpleName();
-
     /**
      * Handler message id for updating the time periodically in interactive mode.
      */
     private static final int MSG_UPDATE_TIME = 0;
 
+    private static final long SECOND_MILLIS = 1000;
+    private static final long MINUTE_MILLIS = 60 * SECOND_MILLIS;
+
+    private static final String PREFS_NAME = "watch_face";
+    private static final String KEY_SHOW_SECONDS = "show_seconds";
+
     @Override
     public Engine onCreateEngine() {
         return new Engine();
     }
 
+    /**
+     * Sets whether the face shows the seconds in interactive mode, which means waking up to
+     * redraw every second rather than every minute.  Off by default to save battery, and takes
+     * effect the next time the face becomes visible.  Set from
+     * {@link SunshineWatchFaceConfigActivity}.
+     */
+    static void setShowSeconds(Context context, boolean showSeconds) {
+        getPrefs(context).edit().putBoolean(KEY_SHOW_SECONDS, showSeconds).apply();
+    }
 
-    private class Engine extends CanvasWatchFaceService.Engine implements
-            GoogleApiClient.ConnectionCallbacks,
-            GoogleApiClient.OnConnectionFailedListener,
-            DataApi.DataListener{
-        boolean mRegisteredTimeZoneReceiver = false;
+    static boolean isShowingSeconds(Context context) {
+        return getPrefs(context).getBoolean(KEY_SHOW_SECONDS, false);
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Handles MSG_UPDATE_TIME for the engine, without keeping it from being collected.
+     */
+    private static class EngineHandler extends Handler {
+        private final WeakReference<Engine> mWeakReference;
 
-        final String WEATHER_DATA_PATH = "/weather-data";
-        final String ICON_KEY = "icon";
-        final String HIGH_TEMP_KEY = "high";
-        final String LOW_TEMP_KEY = "low";
+        EngineHandler(Engine engine) {
+            mWeakReference = new WeakReference<>(engine);
+        }
 
-        int BITMAP_ICON_SIZE = 60;
+        @Override
+        public void handleMessage(Message msg) {
+            Engine engine = mWeakReference.get();
+            if (engine != null && msg.what == MSG_UPDATE_TIME) {
+                engine.handleUpdateTimeMessage();
+            }
+        }
+    }
 
-        Paint mBackgroundPaint;
-        Paint mTimePaint;
-        Paint mDatePaint;
-        Paint mLinePaint;
-        Paint mMaxTempPaint;
-        Paint mMinTempPaint;
-        Paint mWeatherIconPaint;
+
+    private class Engine extends CanvasWatchFaceService.Engine {
+        boolean mRegisteredTimeZoneReceiver = false;
+
+        WatchFaceRenderer mRenderer;
+        WeatherIconLoader mIconLoader;
+        // The last forecast the phone sent
+        ForecastPayload mForecast;
+        // Today's weather as shown, or about to be once its icon is ready
+        WeatherStore.Weather mWeather;
+        // Counts weather updates, so that an icon decoded for an older one is ignored
+        int mWeatherGeneration;
+        // The forecast and the day the pages were last built for
+        ForecastPayload mPagesForecast;
+        int mPagesJulianDay;
+        // Counts forecast page updates, like mWeatherGeneration
+        int mPagesGeneration;
 
         boolean mAmbient;
-        Calendar mCalendar;
+        boolean mShowSeconds;
+        final Handler mUpdateTimeHandler = new EngineHandler(this);
+        // Counts the wakeups to redraw the time, from the timer and from time ticks
+        final WakeupCounter mWakeupCounter = new WakeupCounter("Time updates");
+
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mCalendar.setTimeZone(TimeZone.getDefault());
+                mRenderer.setTimeZone(TimeZone.getDefault());
                 invalidate();
             }
         };
 
-        float mYTimeOffset;
-        float mYDateOffset;
-        float mYLineOffset;
-        float mWeatherInfoYOffset;
-
-        String mMaxTemp = "";
-        String mMinTemp = "";
-
-        Bitmap mWeatherIconBitmap = null;
-
-        SimpleDateFormat mDateFormatter;
-
-        Resources mResources;
-
-        final long TIMEOUT_MS = 100;
+        // WeatherListenerService saves each forecast the phone sends, even while we're hidden
+        final SharedPreferences.OnSharedPreferenceChangeListener mForecastListener =
+                new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
+                        if (WeatherStore.KEY_FORECAST.equals(key)) {
+                            onForecastSaved();
+                        }
+                    }
+                };
 
         /**
          * Whether the display supports fewer bits for each color in ambient mode. When true, we
@@ -124,12 +150,6 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
          */
         boolean mLowBitAmbient;
 
-        GoogleApiClient mGoogleApiClient = new GoogleApiClient.Builder(SunshineWatchFace.this)
-                .addConnectionCallbacks(this)
-                .addOnConnectionFailedListener(this)
-                .addApi(Wearable.API)
-                .build();
-
         @Override
         public void onCreate(SurfaceHolder holder) {
             super.onCreate(holder);
@@ -142,102 +162,138 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                     .setHotwordIndicatorGravity(Gravity.TOP | Gravity.CENTER_HORIZONTAL)
                     .build());
 
-            mDateFormatter = new SimpleDateFormat("EEE, MMM dd yyyy");
-
-            mResources = SunshineWatchFace.this.getResources();
-            mYTimeOffset = mResources.getDimension(R.dimen.time_y_offset);
-            mYDateOffset = mResources.getDimension(R.dimen.date_y_offset);
-            mYLineOffset = mResources.getDimension(R.dimen.line_y_offset);
-            mWeatherInfoYOffset = mResources.getDimension(R.dimen.weather_info_y_offset);
-
-            mBackgroundPaint = new Paint();
-            mBackgroundPaint.setColor(mResources.getColor(R.color.background));
-
-            mTimePaint = createTextPaint(mResources.getColor(R.color.white_color));
-            mDatePaint = createTextPaint(mResources.getColor(R.color.light_blue));
-            mMaxTempPaint = createTextPaint(mResources.getColor(R.color.white_color));
-            mMinTempPaint = createTextPaint(mResources.getColor(R.color.light_blue));
+            mRenderer = new WatchFaceRenderer(SunshineWatchFace.this.getResources());
+            mIconLoader = new WeatherIconLoader(SunshineWatchFace.this.getResources(),
+                    WeatherIconLoader.ICON_SIZE);
 
-            mTimePaint.setTextSize(mResources.getDimension(R.dimen.time_text_size));
-            mDatePaint.setTextSize(mResources.getDimension(R.dimen.date_text_size));
-            mMaxTempPaint.setTextSize(mResources.getDimension(R.dimen.temp_text_size));
-            mMinTempPaint.setTextSize(mResources.getDimension(R.dimen.temp_text_size));
-
-            mLinePaint = new Paint();
-            mLinePaint.setColor(mResources.getColor(R.color.light_blue));
-
-            mWeatherIconPaint = new Paint();
-
-          //  mWeatherIconBitmap = BitmapFactory.decodeResource(mResources, R.drawable.art_clear);
-
-            mCalendar = Calendar.getInstance();
+            // Show the last weather we had on the first frame, rather than waiting for the phone
+            WeatherStore.registerListener(SunshineWatchFace.this, mForecastListener);
+            mForecast = WeatherStore.loadForecast(SunshineWatchFace.this);
+            if (mForecast != null) {
+                mWeather = WeatherStore.getTodaysWeather(mForecast);
+            } else {
+                WeatherListenerService.fetchForecast(SunshineWatchFace.this);
+            }
+            if (mWeather != null) {
+                mRenderer.setWeather(mWeather.mHigh, mWeather.mLow, mIconLoader.loadNow(
+                        WeatherConditions.getArtResource(mWeather.mWeatherId)));
+            }
+            showForecastPages();
         }
 
-
         @Override
-        public void onConnected(@Nullable Bundle bundle) {
-            if (Log.isLoggable(TAG, Log.DEBUG)) {
-                Log.d(TAG, "onConnected: " + bundle);
-            }
-            Wearable.DataApi.addListener(mGoogleApiClient, Engine.this);
+        public void onDestroy() {
+            mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            WeatherStore.unregisterListener(SunshineWatchFace.this, mForecastListener);
+            mIconLoader.quit();
+            super.onDestroy();
         }
 
         @Override
-        public void onConnectionSuspended(int i) {
-            if (Log.isLoggable(TAG, Log.DEBUG)) {
-                Log.d(TAG, "onConnectionSuspended: " + i);
-            }
+        public void onApplyWindowInsets(WindowInsets insets) {
+            super.onApplyWindowInsets(insets);
+            mRenderer.setChinSize(insets.getSystemWindowInsetBottom());
         }
 
         @Override
-        public void onDataChanged(DataEventBuffer dataEvents    ) {
-            Log.d(TAG, "onDataChanged is called");
+        public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+            super.onSurfaceChanged(holder, format, width, height);
+            mRenderer.setSurfaceSize(width, height);
+        }
 
-            Resources resources = SunshineWatchFace.this.getResources();
-            int artResourceId;
 
-            for (DataEvent event : dataEvents) {
-                if (event.getType() == DataEvent.TYPE_CHANGED) {
-                    String path = event.getDataItem().getUri().getPath();
-                    if (WEATHER_DATA_PATH.equals(path)) {
-                        DataMap dataMap = DataMapItem.fromDataItem(event.getDataItem()).getDataMap();
+        /**
+         * Shows the forecast WeatherListenerService just saved.  Its icons were decoded before
+         * it was saved, so they are usually cached already.
+         */
+        private void onForecastSaved() {
+            mForecast = WeatherStore.loadForecast(SunshineWatchFace.this);
+            showTodaysWeather();
+            showForecastPages();
+            invalidate();
+        }
 
-                        mMaxTemp = dataMap.getString(HIGH_TEMP_KEY);
-                        mMinTemp = dataMap.getString(LOW_TEMP_KEY);
-                        Log.d(TAG, "dataItem path:" + WEATHER_DATA_PATH);
+        private void showTodaysWeather() {
+            if (mForecast == null) {
+                return;
+            }
+            WeatherStore.Weather weather = WeatherStore.getTodaysWeather(mForecast);
+            if (weather != null) {
+                setWeather(weather);
+            }
+        }
 
-                        artResourceId = Utility.getArtResourceForWeatherCondition(
-                                dataMap.getInt(ICON_KEY));
+        /**
+         * Builds the pages of the forecast after today, once their icons are ready, unless they
+         * are already built for this forecast and day.
+         */
+        private void showForecastPages() {
+            int today = WeatherStore.getTodaysJulianDay();
+            if (mForecast == null || (mForecast == mPagesForecast && today == mPagesJulianDay)) {
+                return;
+            }
+            mPagesForecast = mForecast;
+            mPagesJulianDay = today;
 
-                        mWeatherIconBitmap = BitmapFactory.decodeResource(resources, artResourceId);
-                        mWeatherIconBitmap = Bitmap.createScaledBitmap( mWeatherIconBitmap,
-                                BITMAP_ICON_SIZE,
-                                BITMAP_ICON_SIZE, true);
+            ForecastPayload forecast = mForecast;
+            int first = 0;
+            while (first < forecast.getDayCount() && forecast.getJulianDay(first) <= today) {
+                first++;
+            }
+            int days = forecast.getDayCount() - first;
+            final String[] dayNames = new String[days];
+            final String[] highs = new String[days];
+            final String[] lows = new String[days];
+            int[] artResourceIds = new int[days];
+            SimpleDateFormat dayFormat = new SimpleDateFormat("EEE");
+            Time time = new Time();
+            for (int i = 0; i < days; i++) {
+                int day = first + i;
+                long date = time.setJulianDay(forecast.getJulianDay(day));
+                dayNames[i] = dayFormat.format(new Date(date)).toUpperCase();
+                highs[i] = WeatherStore.formatTemperature(forecast.getHigh(day));
+                lows[i] = WeatherStore.formatTemperature(forecast.getLow(day));
+                artResourceIds[i] = WeatherConditions.getArtResource(forecast.getWeatherId(day));
+            }
 
-                    }else {
-                        Log.d(TAG, "Unrecognized path: " + path);
+            final int generation = ++mPagesGeneration;
+            mIconLoader.loadAll(artResourceIds, new WeatherIconLoader.IconsCallback() {
+                @Override
+                public void onIconsLoaded(Bitmap[] icons) {
+                    if (generation != mPagesGeneration) {
+                        // A newer forecast arrived while these icons were decoding
+                        return;
                     }
+                    mRenderer.setForecast(dayNames, highs, lows, icons);
+                    invalidate();
                 }
-            }
-
-            invalidate();
+            });
         }
 
-
-        @Override
-        public void onConnectionFailed(@NonNull ConnectionResult connectionResult) {
-            if (Log.isLoggable(TAG, Log.DEBUG)) {
-                Log.d(TAG, "onConnectionFailed: " + connectionResult);
+        /**
+         * Shows new weather once its icon is ready, so that the temperatures and the icon
+         * always change together.
+         */
+        private void setWeather(final WeatherStore.Weather weather) {
+            if (weather.equals(mWeather)) {
+                return;
             }
+            mWeather = weather;
+            final int generation = ++mWeatherGeneration;
+            mIconLoader.load(WeatherConditions.getArtResource(weather.mWeatherId),
+                    new WeatherIconLoader.Callback() {
+                        @Override
+                        public void onIconLoaded(Bitmap icon) {
+                            if (generation != mWeatherGeneration) {
+                                // Newer weather arrived while this icon was decoding
+                                return;
+                            }
+                            mRenderer.setWeather(weather.mHigh, weather.mLow, icon);
+                            invalidate();
+                        }
+                    });
         }
 
-        private Paint createTextPaint(int textColor) {
-            Paint paint = new Paint();
-            paint.setColor(textColor);
-            paint.setTypeface(NORMAL_TYPEFACE);
-            paint.setAntiAlias(true);
-            return paint;
-        }
 
         @Override
         public void onVisibilityChanged(boolean visible) {
@@ -245,18 +301,20 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
             if (visible) {
                 registerReceiver();
-                mGoogleApiClient.connect();
 
                 // Update time zone in case it changed while we weren't visible.
-                mCalendar.setTimeZone(TimeZone.getDefault());
+                mRenderer.setTimeZone(TimeZone.getDefault());
+
+                mShowSeconds = isShowingSeconds(SunshineWatchFace.this);
+                mRenderer.setShowSeconds(mShowSeconds);
             } else {
                 unregisterReceiver();
-
-                if (mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
-                    Wearable.DataApi.removeListener(mGoogleApiClient, this);
-                    mGoogleApiClient.disconnect();
-                }
+                mRenderer.showFirstPage();
+                mWakeupCounter.report(SystemClock.elapsedRealtime());
             }
+
+            // Whether the timer should be running depends on whether we're visible
+            updateTimer();
         }
 
         private void registerReceiver() {
@@ -281,11 +339,16 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            mRenderer.setLowBitAmbient(mLowBitAmbient);
         }
 
         @Override
         public void onTimeTick() {
             super.onTimeTick();
+            mWakeupCounter.onWakeup(SystemClock.elapsedRealtime());
+            // Moves on to the next day's weather after midnight
+            showTodaysWeather();
+            showForecastPages();
             invalidate();
         }
 
@@ -294,75 +357,65 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             super.onAmbientModeChanged(inAmbientMode);
             if (mAmbient != inAmbientMode) {
                 mAmbient = inAmbientMode;
-                if (mLowBitAmbient) {
-                    mTimePaint.setAntiAlias(!inAmbientMode);
-                    mDatePaint.setAntiAlias(!inAmbientMode);
+                mRenderer.setAmbient(inAmbientMode);
+                if (inAmbientMode) {
+                    // Come back to today's weather
+                    mRenderer.showFirstPage();
                 }
-
-                if(mAmbient){
-                    mDatePaint.setColor(mResources.getColor(R.color.grey));
-                }else{
-                    mDatePaint.setColor(mResources.getColor(R.color.light_blue));
-                }
-
                 invalidate();
             }
-        }
 
+            // Whether the timer should be running depends on whether we're in ambient mode
+            updateTimer();
+        }
 
-        @Override
-        public void onDraw(Canvas canvas, Rect bounds) {
-            // Draw the background.
-            if (isInAmbientMode()) {
-                canvas.drawColor(Color.BLACK);
-            } else {
-                canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
+        /**
+         * Starts the timer if it should be running and isn't, or stops it if it shouldn't be
+         * running but is.
+         */
+        private void updateTimer() {
+            mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            if (shouldTimerBeRunning()) {
+                mUpdateTimeHandler.sendEmptyMessage(MSG_UPDATE_TIME);
             }
+        }
 
-            // Draw H:MM in ambient mode or H:MM:SS in interactive mode.
-            mCalendar.setTimeInMillis(System.currentTimeMillis());
-
-            String timeText = String.format("%02d:%02d", mCalendar.get(Calendar.HOUR), mCalendar.get(Calendar.MINUTE));
-            String dateText = mDateFormatter.format(mCalendar.getTime()).toUpperCase();
-
-            canvas.drawText(timeText,
-                    bounds.centerX() - (mTimePaint.measureText(timeText))/2,
-                    mYTimeOffset,
-                    mTimePaint);
-
-            canvas.drawText(dateText,
-                    bounds.centerX() - (mDatePaint.measureText(dateText))/2,
-                    mYDateOffset,
-                    mDatePaint);
-
-            if(!mAmbient){
-
-                canvas.drawLine(bounds.centerX()-25,
-                        mYLineOffset,
-                        bounds.centerX()+25,
-                        mYLineOffset,
-                        mLinePaint);
-
-                float maxTempTextSize = mDatePaint.measureText(mMaxTemp);
-
-                if(mWeatherIconBitmap!=null) {
-                    canvas.drawBitmap(mWeatherIconBitmap,
-                            bounds.centerX() + (maxTempTextSize) / 2 - 110,
-                            mWeatherInfoYOffset - 45,
-                            mWeatherIconPaint);
-                }
+        /**
+         * The timer only runs while we're visible and in interactive mode.  In ambient mode
+         * onTimeTick updates the time once a minute instead.
+         */
+        private boolean shouldTimerBeRunning() {
+            return isVisible() && !isInAmbientMode();
+        }
 
-                canvas.drawText(mMaxTemp,
-                        bounds.centerX() - (maxTempTextSize)/2,
-                        mWeatherInfoYOffset,
-                        mMaxTempPaint);
+        /**
+         * Redraws the time, then waits until the start of the next second, or of the next
+         * minute when the seconds aren't shown, so that the digits change on time.
+         */
+        void handleUpdateTimeMessage() {
+            mWakeupCounter.onWakeup(SystemClock.elapsedRealtime());
+            invalidate();
+            if (shouldTimerBeRunning()) {
+                long interval = mShowSeconds ? SECOND_MILLIS : MINUTE_MILLIS;
+                long delayMs = interval - (System.currentTimeMillis() % interval);
+                mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
+            }
+        }
 
-                canvas.drawText(mMinTemp,
-                        bounds.centerX() + (maxTempTextSize)/2 + 30,
-                        mWeatherInfoYOffset,
-                        mMinTempPaint);
+        @Override
+        public void onTapCommand(int tapType, int x, int y, long eventTime) {
+            // Each tap shows the next page of the forecast, then today's weather again
+            if (tapType == TAP_TYPE_TAP && !mAmbient && mRenderer.getPageCount() > 1) {
+                mRenderer.nextPage();
+                invalidate();
             }
+        }
 
+
+        @Override
+        public void onDraw(Canvas canvas, Rect bounds) {
+            // Everything is laid out ahead of time, so drawing a frame allocates nothing
+            mRenderer.draw(canvas, System.currentTimeMillis());
         }
     }
 }
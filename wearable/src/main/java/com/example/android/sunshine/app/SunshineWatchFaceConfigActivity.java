@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.widget.CompoundButton;
+import android.widget.Switch;
+
+/**
+ * Settings of the watch face, opened from its gear in the watch face picker.  For now that is
+ * only whether it shows the seconds, which the face picks up when it becomes visible again.
+ */
+public class SunshineWatchFaceConfigActivity extends Activity {
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_watch_face_config);
+
+        Switch showSeconds = (Switch) findViewById(R.id.show_seconds);
+        showSeconds.setChecked(SunshineWatchFace.isShowingSeconds(this));
+        showSeconds.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                SunshineWatchFace.setShowSeconds(SunshineWatchFaceConfigActivity.this, isChecked);
+            }
+        });
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.util.Log;
+
+/**
+ * Counts how often the watch face wakes up to redraw the time, to check what showing the
+ * seconds costs in battery.  The count is reported to the log as wakeups per hour, once an
+ * hour, and whenever {@link #report(long)} is called.
+ */
+class WakeupCounter {
+    private static final String TAG = WakeupCounter.class.getSimpleName();
+
+    private static final long HOUR_MILLIS = 60 * 60 * 1000;
+
+    private final String mName;
+    private long mStartMillis = -1;
+    private int mWakeups;
+
+    /**
+     * @param name Name of what wakes up, used to label the reports
+     */
+    WakeupCounter(String name) {
+        mName = name;
+    }
+
+    /**
+     * Counts a wakeup, and reports the hour's count if an hour has gone by since counting
+     * started.
+     *
+     * @param elapsedRealtime Time of the wakeup, from SystemClock.elapsedRealtime()
+     */
+    void onWakeup(long elapsedRealtime) {
+        if (mStartMillis == -1) {
+            mStartMillis = elapsedRealtime;
+        }
+        mWakeups++;
+        if (elapsedRealtime - mStartMillis >= HOUR_MILLIS) {
+            report(elapsedRealtime);
+        }
+    }
+
+    int getWakeups() {
+        return mWakeups;
+    }
+
+    /**
+     * @return the rate of wakeups since counting started, scaled to an hour
+     */
+    float getWakeupsPerHour(long elapsedRealtime) {
+        long elapsed = elapsedRealtime - mStartMillis;
+        if (mStartMillis == -1 || elapsed <= 0) {
+            return 0;
+        }
+        return mWakeups * (float) HOUR_MILLIS / elapsed;
+    }
+
+    /**
+     * Logs the rate of wakeups since counting started, then starts counting again.
+     */
+    void report(long elapsedRealtime) {
+        if (mStartMillis != -1) {
+            Log.i(TAG, mName + ": " + mWakeups + " wakeups in "
+                    + (elapsedRealtime - mStartMillis) / 1000 + "s, "
+                    + getWakeupsPerHour(elapsedRealtime) + " per hour");
+        }
+        mStartMillis = -1;
+        mWakeups = 0;
+    }
+}
@@ -0,0 +1,541 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Draws the Sunshine watch face for {@link SunshineWatchFace}.
+ *
+ * Drawing a frame allocates nothing once the face is laid out.  The time is kept as digits in a
+ * reused char buffer and only measured when the digits change, the date is only formatted when
+ * the day changes, and everything else is measured and positioned when the surface, the insets
+ * or the weather change rather than on every frame.  The calendar is only consulted once an
+ * hour, when the hour digits change; minutes are worked out from the start of the hour.
+ *
+ * The background and the date only change when the day changes, so they are drawn once into a
+ * layer bitmap for each mode.  The weather under the line is drawn into page bitmaps when it
+ * arrives: the first page shows today, and tapping the face moves on to pages with the rest of
+ * the forecast, a few days at a time.  A frame is just the layer and the current page copied to
+ * the screen with the time drawn over them, so paging costs no decoding or text layout.
+ */
+class WatchFaceRenderer {
+    private static final Typeface NORMAL_TYPEFACE =
+            Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
+
+    private static final long MINUTE_MILLIS = 60 * 1000;
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+
+    private static final int TIME_LENGTH_MINUTES = 5;
+    private static final int TIME_LENGTH_SECONDS = 8;
+
+    // Half the length of the line between the date and the weather
+    private static final float LINE_HALF_LENGTH = 25;
+    // Where the icon and low temperature sit relative to the high temperature
+    private static final float ICON_X_OFFSET = -110;
+    private static final float ICON_Y_OFFSET = -45;
+    private static final float MIN_TEMP_X_OFFSET = 30;
+
+    private static final int LAYER_INTERACTIVE = 0;
+    private static final int LAYER_AMBIENT = 1;
+    private static final int LAYER_LOW_BIT_AMBIENT = 2;
+    private static final int LAYER_COUNT = 3;
+
+    // Days shown on each forecast page, across this much of the screen's width
+    private static final int DAYS_PER_PAGE = 3;
+    private static final float FORECAST_WIDTH_FRACTION = 0.8f;
+    // Space between a forecast day's name and its icon
+    private static final float FORECAST_ICON_GAP = 6;
+
+    private final Resources mResources;
+
+    private final Paint mBackgroundPaint;
+    private final Paint mTimePaint;
+    private final Paint mDatePaint;
+    private final Paint mLinePaint;
+    private final Paint mMaxTempPaint;
+    private final Paint mMinTempPaint;
+    private final Paint mWeatherIconPaint;
+    private final Paint mForecastDayPaint;
+    private final Paint mForecastMaxTempPaint;
+    private final Paint mForecastMinTempPaint;
+    private final Paint mForecastIconPaint;
+
+    private final float mYTimeOffset;
+    private final float mYDateOffset;
+    private final float mYLineOffset;
+    private final float mWeatherInfoYOffset;
+    private final float mForecastDayYOffset;
+    private final float mForecastIconSize;
+    private final float mForecastTempYOffset;
+
+    private final Calendar mCalendar = Calendar.getInstance();
+    private final SimpleDateFormat mDateFormatter = new SimpleDateFormat("EEE, MMM dd yyyy");
+
+    // The hour the time is currently worked out from, starting at mHourStartMillis
+    private long mHourStartMillis = Long.MIN_VALUE;
+    private int mHour;
+    // "HH:MM:SS", rewritten in place when the time shown changes, and drawn without the
+    // seconds unless they are shown
+    private final char[] mTimeChars = new char[]{'0', '0', ':', '0', '0', ':', '0', '0'};
+    private int mTimeLength = TIME_LENGTH_MINUTES;
+    private int mMinute = -1;
+    private int mSecond = -1;
+    private float mTimeX;
+
+    // Year and day of year of the date shown, to tell when it needs formatting again
+    private int mDateDay = -1;
+    private String mDateText = "";
+    private float mDateX;
+
+    private String mMaxTemp = "";
+    private String mMinTemp = "";
+    private Bitmap mWeatherIcon;
+
+    // The forecast after today
+    private String[] mForecastDayNames = new String[0];
+    private String[] mForecastHighs = new String[0];
+    private String[] mForecastLows = new String[0];
+    private Bitmap[] mForecastIcons = new Bitmap[0];
+
+    private int mWidth;
+    private int mHeight;
+    private int mChinSize;
+
+    // Positions worked out ahead of drawing
+    private float mCenterX;
+    private float mLineStartX;
+    private float mLineEndX;
+    private float mWeatherY;
+    private float mMaxTempX;
+    private float mMinTempX;
+    private float mIconX;
+    private float mIconY;
+    private float mPagesTop;
+    private float mForecastTempY;
+
+    private boolean mAmbient;
+    private boolean mLowBitAmbient;
+    private boolean mShowSeconds;
+
+    // Text measured since the renderer was created, for the render benchmark
+    private int mTextMeasureCount;
+
+    // Everything but the time, for each mode, drawn again on the next frame once invalid
+    private final Bitmap[] mLayers = new Bitmap[LAYER_COUNT];
+    private final boolean[] mLayerValid = new boolean[LAYER_COUNT];
+    private final Canvas mLayerCanvas = new Canvas();
+
+    // The weather under the line, today's first, then the forecast
+    private Bitmap[] mPages = new Bitmap[0];
+    private int mPage;
+
+    WatchFaceRenderer(Resources resources) {
+        mResources = resources;
+
+        mYTimeOffset = resources.getDimension(R.dimen.time_y_offset);
+        mYDateOffset = resources.getDimension(R.dimen.date_y_offset);
+        mYLineOffset = resources.getDimension(R.dimen.line_y_offset);
+        mWeatherInfoYOffset = resources.getDimension(R.dimen.weather_info_y_offset);
+        mForecastDayYOffset = resources.getDimension(R.dimen.forecast_day_y_offset);
+        mForecastIconSize = resources.getDimension(R.dimen.forecast_icon_size);
+        mForecastTempYOffset = resources.getDimension(R.dimen.forecast_temp_y_offset);
+
+        mBackgroundPaint = new Paint();
+        mBackgroundPaint.setColor(resources.getColor(R.color.background));
+
+        mTimePaint = createTextPaint(resources.getColor(R.color.white_color));
+        mDatePaint = createTextPaint(resources.getColor(R.color.light_blue));
+        mMaxTempPaint = createTextPaint(resources.getColor(R.color.white_color));
+        mMinTempPaint = createTextPaint(resources.getColor(R.color.light_blue));
+
+        mTimePaint.setTextSize(resources.getDimension(R.dimen.time_text_size));
+        mDatePaint.setTextSize(resources.getDimension(R.dimen.date_text_size));
+        mMaxTempPaint.setTextSize(resources.getDimension(R.dimen.temp_text_size));
+        mMinTempPaint.setTextSize(resources.getDimension(R.dimen.temp_text_size));
+
+        mLinePaint = new Paint();
+        mLinePaint.setColor(resources.getColor(R.color.light_blue));
+
+        mWeatherIconPaint = new Paint();
+
+        // The forecast pages are only ever drawn in interactive mode
+        mForecastDayPaint = createTextPaint(resources.getColor(R.color.light_blue));
+        mForecastMaxTempPaint = createTextPaint(resources.getColor(R.color.white_color));
+        mForecastMinTempPaint = createTextPaint(resources.getColor(R.color.light_blue));
+        mForecastDayPaint.setTextSize(resources.getDimension(R.dimen.date_text_size));
+        mForecastMaxTempPaint.setTextSize(resources.getDimension(R.dimen.date_text_size));
+        mForecastMinTempPaint.setTextSize(resources.getDimension(R.dimen.date_text_size));
+        // Forecast icons are scaled down from the size of today's icon
+        mForecastIconPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    }
+
+    private static Paint createTextPaint(int textColor) {
+        Paint paint = new Paint();
+        paint.setColor(textColor);
+        paint.setTypeface(NORMAL_TYPEFACE);
+        paint.setAntiAlias(true);
+        return paint;
+    }
+
+    void setSurfaceSize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        updateLayout();
+    }
+
+    /**
+     * @param chinSize Height of the flat part at the bottom of the screen, or 0 if there is none
+     */
+    void setChinSize(int chinSize) {
+        mChinSize = chinSize;
+        updateLayout();
+    }
+
+    void setTimeZone(TimeZone timeZone) {
+        mCalendar.setTimeZone(timeZone);
+        // Work out the hour and the date again
+        mHourStartMillis = Long.MIN_VALUE;
+        mDateDay = -1;
+    }
+
+    void setLowBitAmbient(boolean lowBitAmbient) {
+        mLowBitAmbient = lowBitAmbient;
+    }
+
+    /**
+     * @param showSeconds Whether to show the seconds in interactive mode.  They are never shown
+     * in ambient mode.
+     */
+    void setShowSeconds(boolean showSeconds) {
+        mShowSeconds = showSeconds;
+        mMinute = -1;
+    }
+
+    void setAmbient(boolean ambient) {
+        mAmbient = ambient;
+        // Drop or bring back the seconds
+        mMinute = -1;
+        if (mLowBitAmbient) {
+            mTimePaint.setAntiAlias(!ambient);
+            mDatePaint.setAntiAlias(!ambient);
+        }
+        mDatePaint.setColor(mResources.getColor(ambient ? R.color.grey : R.color.light_blue));
+    }
+
+    /**
+     * @param maxTemp Formatted high temperature
+     * @param minTemp Formatted low temperature
+     * @param weatherIcon Icon for the weather condition, already at the size it is drawn at
+     */
+    void setWeather(String maxTemp, String minTemp, Bitmap weatherIcon) {
+        mMaxTemp = maxTemp != null ? maxTemp : "";
+        mMinTemp = minTemp != null ? minTemp : "";
+        mWeatherIcon = weatherIcon;
+        updateLayout();
+    }
+
+    /**
+     * Sets the forecast shown on the pages after today's.  All of the arrays have an entry for
+     * each day after today.
+     *
+     * @param dayNames Short name of each day
+     * @param highs Formatted high temperature of each day
+     * @param lows Formatted low temperature of each day
+     * @param icons Icon for each day's weather condition, or null for none
+     */
+    void setForecast(String[] dayNames, String[] highs, String[] lows, Bitmap[] icons) {
+        mForecastDayNames = dayNames;
+        mForecastHighs = highs;
+        mForecastLows = lows;
+        mForecastIcons = icons;
+        drawPages();
+    }
+
+    int getPageCount() {
+        return mPages.length;
+    }
+
+    int getPage() {
+        return mPage;
+    }
+
+    /**
+     * Moves on to the next page of the forecast, or back to today's weather after the last.
+     */
+    void nextPage() {
+        if (mPages.length > 0) {
+            mPage = (mPage + 1) % mPages.length;
+        }
+    }
+
+    void showFirstPage() {
+        mPage = 0;
+    }
+
+    private void updateLayout() {
+        mCenterX = mWidth / 2f;
+        mLineStartX = mCenterX - LINE_HALF_LENGTH;
+        mLineEndX = mCenterX + LINE_HALF_LENGTH;
+
+        // Keep the weather clear of the chin on screens that have one
+        mWeatherY = mWeatherInfoYOffset;
+        if (mChinSize > 0 && mHeight > 0) {
+            float bottom = mHeight - mChinSize - mMaxTempPaint.descent();
+            mWeatherY = Math.min(mWeatherY, bottom);
+        }
+
+        // The weather is laid out around the high temperature, as measured at the date's size
+        float maxTempWidth = measureText(mDatePaint, mMaxTemp);
+        mMaxTempX = mCenterX - maxTempWidth / 2;
+        mMinTempX = mCenterX + maxTempWidth / 2 + MIN_TEMP_X_OFFSET;
+        mIconX = mCenterX + maxTempWidth / 2 + ICON_X_OFFSET;
+        mIconY = mWeatherY + ICON_Y_OFFSET;
+
+        // The pages cover everything from the top of today's icon or of the forecast days down
+        mPagesTop = Math.max(0, Math.min(mIconY,
+                mForecastDayYOffset + mForecastDayPaint.ascent()));
+        mForecastTempY = mForecastTempYOffset;
+        if (mChinSize > 0 && mHeight > 0) {
+            float bottom = mHeight - mChinSize - mForecastMaxTempPaint.descent();
+            mForecastTempY = Math.min(mForecastTempY, bottom);
+        }
+
+        // Center the time and date again
+        mMinute = -1;
+        mDateX = mCenterX - measureText(mDatePaint, mDateText) / 2;
+        invalidateLayers();
+        drawPages();
+    }
+
+    int getTextMeasureCount() {
+        return mTextMeasureCount;
+    }
+
+    private float measureText(Paint paint, String text) {
+        mTextMeasureCount++;
+        return paint.measureText(text);
+    }
+
+    private float measureText(Paint paint, char[] text, int count) {
+        mTextMeasureCount++;
+        return paint.measureText(text, 0, count);
+    }
+
+    private void invalidateLayers() {
+        for (int i = 0; i < LAYER_COUNT; i++) {
+            mLayerValid[i] = false;
+        }
+    }
+
+    private int getLayer() {
+        if (!mAmbient) {
+            return LAYER_INTERACTIVE;
+        }
+        return mLowBitAmbient ? LAYER_LOW_BIT_AMBIENT : LAYER_AMBIENT;
+    }
+
+    void draw(Canvas canvas, long nowMillis) {
+        if (mWidth == 0 || mHeight == 0) {
+            return;
+        }
+        updateTime(nowMillis);
+
+        int layer = getLayer();
+        if (!mLayerValid[layer]) {
+            drawLayer(layer);
+        }
+        canvas.drawBitmap(mLayers[layer], 0, 0, null);
+        if (!mAmbient && mPage < mPages.length) {
+            canvas.drawBitmap(mPages[mPage], 0, mPagesTop, null);
+        }
+
+        canvas.drawText(mTimeChars, 0, mTimeLength, mTimeX, mYTimeOffset, mTimePaint);
+    }
+
+    /**
+     * Draws everything but the time and the weather into the layer for the current mode.  The
+     * paints are already set up for the mode, since a layer is only drawn while its mode is
+     * showing.
+     */
+    private void drawLayer(int layer) {
+        Bitmap bitmap = mLayers[layer];
+        if (bitmap == null || bitmap.getWidth() != mWidth || bitmap.getHeight() != mHeight) {
+            // Ambient layers are only black and grey, so they don't need the full color depth
+            bitmap = Bitmap.createBitmap(mWidth, mHeight, layer == LAYER_INTERACTIVE
+                    ? Bitmap.Config.ARGB_8888 : Bitmap.Config.RGB_565);
+            mLayers[layer] = bitmap;
+        }
+        Canvas canvas = mLayerCanvas;
+        canvas.setBitmap(bitmap);
+
+        // Draw the background.
+        if (mAmbient) {
+            canvas.drawColor(Color.BLACK);
+        } else {
+            canvas.drawRect(0, 0, mWidth, mHeight, mBackgroundPaint);
+        }
+
+        canvas.drawText(mDateText, mDateX, mYDateOffset, mDatePaint);
+
+        if (!mAmbient) {
+            canvas.drawLine(mLineStartX, mYLineOffset, mLineEndX, mYLineOffset, mLinePaint);
+        }
+
+        canvas.setBitmap(null);
+        mLayerValid[layer] = true;
+    }
+
+    /**
+     * Draws today's weather and the forecast pages.  Pages are transparent strips drawn over
+     * the layer, with everything at the same position as it would be on the whole screen.
+     */
+    private void drawPages() {
+        if (mWidth == 0 || mHeight == 0) {
+            return;
+        }
+        int days = mForecastDayNames.length;
+        int pageCount = 1 + (days + DAYS_PER_PAGE - 1) / DAYS_PER_PAGE;
+        if (mPages.length != pageCount) {
+            Bitmap[] pages = new Bitmap[pageCount];
+            System.arraycopy(mPages, 0, pages, 0, Math.min(mPages.length, pageCount));
+            mPages = pages;
+        }
+        if (mPage >= pageCount) {
+            mPage = 0;
+        }
+
+        int pageHeight = (int) Math.ceil(mHeight - mPagesTop);
+        Canvas canvas = mLayerCanvas;
+        for (int page = 0; page < pageCount; page++) {
+            Bitmap bitmap = mPages[page];
+            if (bitmap == null || bitmap.getWidth() != mWidth
+                    || bitmap.getHeight() != pageHeight) {
+                bitmap = Bitmap.createBitmap(mWidth, pageHeight, Bitmap.Config.ARGB_8888);
+                mPages[page] = bitmap;
+            } else {
+                bitmap.eraseColor(Color.TRANSPARENT);
+            }
+            canvas.setBitmap(bitmap);
+            canvas.save();
+            canvas.translate(0, -mPagesTop);
+            if (page == 0) {
+                drawTodaysWeather(canvas);
+            } else {
+                int first = (page - 1) * DAYS_PER_PAGE;
+                drawForecastDays(canvas, first, Math.min(days, first + DAYS_PER_PAGE));
+            }
+            canvas.restore();
+        }
+        canvas.setBitmap(null);
+    }
+
+    private void drawTodaysWeather(Canvas canvas) {
+        if (mWeatherIcon != null) {
+            canvas.drawBitmap(mWeatherIcon, mIconX, mIconY, mWeatherIconPaint);
+        }
+
+        canvas.drawText(mMaxTemp, mMaxTempX, mWeatherY, mMaxTempPaint);
+        canvas.drawText(mMinTemp, mMinTempX, mWeatherY, mMinTempPaint);
+    }
+
+    private void drawForecastDays(Canvas canvas, int first, int end) {
+        float columnWidth = mWidth * FORECAST_WIDTH_FRACTION / DAYS_PER_PAGE;
+        // Center the days, so that a last page with fewer of them stays balanced
+        float left = mCenterX - columnWidth * (end - first) / 2;
+        float iconTop = mForecastDayYOffset + FORECAST_ICON_GAP;
+        RectF iconRect = new RectF();
+
+        for (int day = first; day < end; day++) {
+            float columnCenterX = left + columnWidth * (day - first + 0.5f);
+
+            String dayName = mForecastDayNames[day];
+            canvas.drawText(dayName, columnCenterX - measureText(mForecastDayPaint, dayName) / 2,
+                    mForecastDayYOffset, mForecastDayPaint);
+
+            Bitmap icon = mForecastIcons[day];
+            if (icon != null) {
+                iconRect.set(columnCenterX - mForecastIconSize / 2, iconTop,
+                        columnCenterX + mForecastIconSize / 2, iconTop + mForecastIconSize);
+                canvas.drawBitmap(icon, null, iconRect, mForecastIconPaint);
+            }
+
+            // The high and the low side by side, a space apart
+            String high = mForecastHighs[day];
+            String low = mForecastLows[day];
+            float highWidth = measureText(mForecastMaxTempPaint, high);
+            float spaceWidth = measureText(mForecastMaxTempPaint, " ");
+            float tempsLeft = columnCenterX
+                    - (highWidth + spaceWidth + measureText(mForecastMinTempPaint, low)) / 2;
+            canvas.drawText(high, tempsLeft, mForecastTempY, mForecastMaxTempPaint);
+            canvas.drawText(low, tempsLeft + highWidth + spaceWidth, mForecastTempY,
+                    mForecastMinTempPaint);
+        }
+    }
+
+    private void updateTime(long nowMillis) {
+        if (nowMillis < mHourStartMillis || nowMillis >= mHourStartMillis + HOUR_MILLIS) {
+            // A new hour, which may also be a new day or a daylight saving change
+            mCalendar.setTimeInMillis(nowMillis);
+            mHour = mCalendar.get(Calendar.HOUR);
+            mHourStartMillis = nowMillis
+                    - mCalendar.get(Calendar.MINUTE) * MINUTE_MILLIS
+                    - mCalendar.get(Calendar.SECOND) * 1000
+                    - mCalendar.get(Calendar.MILLISECOND);
+            mTimeChars[0] = (char) ('0' + mHour / 10);
+            mTimeChars[1] = (char) ('0' + mHour % 10);
+            mMinute = -1;
+
+            int day = mCalendar.get(Calendar.YEAR) * 1000 + mCalendar.get(Calendar.DAY_OF_YEAR);
+            if (day != mDateDay) {
+                mDateDay = day;
+                mDateText = mDateFormatter.format(mCalendar.getTime()).toUpperCase();
+                mDateX = mCenterX - measureText(mDatePaint, mDateText) / 2;
+                invalidateLayers();
+            }
+        }
+
+        long millisIntoHour = nowMillis - mHourStartMillis;
+        int minute = (int) (millisIntoHour / MINUTE_MILLIS);
+        int second = mShowSeconds && !mAmbient
+                ? (int) (millisIntoHour % MINUTE_MILLIS / 1000) : -1;
+        if (minute != mMinute || second != mSecond) {
+            mMinute = minute;
+            mSecond = second;
+            mTimeChars[3] = (char) ('0' + minute / 10);
+            mTimeChars[4] = (char) ('0' + minute % 10);
+            if (second == -1) {
+                mTimeLength = TIME_LENGTH_MINUTES;
+            } else {
+                mTimeChars[6] = (char) ('0' + second / 10);
+                mTimeChars[7] = (char) ('0' + second % 10);
+                mTimeLength = TIME_LENGTH_SECONDS;
+            }
+            mTimeX = mCenterX - measureText(mTimePaint, mTimeChars, mTimeLength) / 2;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.LruCache;
+
+/**
+ * Decodes weather icons at the size the watch face draws them, on a background thread.
+ *
+ * Icons are subsampled while decoding and scaled the rest of the way by the decoder, so the
+ * full-size artwork is never held in memory.  Decoded icons are kept in a small cache keyed by
+ * art resource id and shared by every engine, so a condition that has been shown before costs
+ * nothing.
+ */
+class WeatherIconLoader {
+    /**
+     * Size the watch face draws the weather icons at, in pixels.
+     */
+    static final int ICON_SIZE = 60;
+
+    // Room for every icon at the watch face's size
+    private static final int ICON_CACHE_BYTES = 256 * 1024;
+
+    private static final LruCache<Integer, Bitmap> sIconCache =
+            new LruCache<Integer, Bitmap>(ICON_CACHE_BYTES) {
+                @Override
+                protected int sizeOf(Integer key, Bitmap bitmap) {
+                    return bitmap.getByteCount();
+                }
+            };
+
+    interface Callback {
+        /**
+         * Called on the main thread once the icon is ready.
+         *
+         * @param icon the icon, or null if it couldn't be decoded
+         */
+        void onIconLoaded(Bitmap icon);
+    }
+
+    interface IconsCallback {
+        /**
+         * Called on the main thread once all of the icons are ready.
+         *
+         * @param icons the icons, in the order they were asked for, with null for any that
+         * couldn't be decoded
+         */
+        void onIconsLoaded(Bitmap[] icons);
+    }
+
+    private final Resources mResources;
+    private final int mIconSize;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+    // Set by quit(), so that a decode already running doesn't call back a destroyed engine
+    private volatile boolean mQuit;
+
+    WeatherIconLoader(Resources resources, int iconSize) {
+        mResources = resources;
+        mIconSize = iconSize;
+        mThread = new HandlerThread(WeatherIconLoader.class.getSimpleName(),
+                Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    /**
+     * Loads the icon for an art resource.  A cached icon is passed to the callback straight
+     * away, otherwise it is decoded in the background and passed to it on the main thread.
+     */
+    void load(final int artResourceId, final Callback callback) {
+        Bitmap icon = sIconCache.get(artResourceId);
+        if (icon != null || artResourceId == -1) {
+            callback.onIconLoaded(icon);
+            return;
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap icon = decode(mResources, mIconSize, artResourceId);
+                if (icon != null) {
+                    sIconCache.put(artResourceId, icon);
+                }
+                if (mQuit) {
+                    return;
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!mQuit) {
+                            callback.onIconLoaded(icon);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Loads the icons for several art resources in the background, such as those of the days of
+     * the forecast, and passes them all to the callback on the main thread.
+     */
+    void loadAll(final int[] artResourceIds, final IconsCallback callback) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap[] icons = new Bitmap[artResourceIds.length];
+                for (int i = 0; i < artResourceIds.length; i++) {
+                    icons[i] = loadNow(artResourceIds[i]);
+                }
+                if (mQuit) {
+                    return;
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!mQuit) {
+                            callback.onIconsLoaded(icons);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Loads the icon for an art resource on the calling thread, for when it has to be shown
+     * straight away.
+     *
+     * @return the icon, or null if it couldn't be decoded
+     */
+    Bitmap loadNow(int artResourceId) {
+        return loadNow(mResources, mIconSize, artResourceId);
+    }
+
+    /**
+     * Decodes the icons for several art resources into the cache on the calling thread, so that
+     * they are ready before the watch face asks for them.  Since the cache is shared by the whole
+     * process, this works from anywhere in the app, without a loader.
+     */
+    static void prefetch(Resources resources, int iconSize, int[] artResourceIds) {
+        for (int artResourceId : artResourceIds) {
+            loadNow(resources, iconSize, artResourceId);
+        }
+    }
+
+    private static Bitmap loadNow(Resources resources, int iconSize, int artResourceId) {
+        if (artResourceId == -1) {
+            return null;
+        }
+        Bitmap icon = sIconCache.get(artResourceId);
+        if (icon == null) {
+            icon = decode(resources, iconSize, artResourceId);
+            if (icon != null) {
+                sIconCache.put(artResourceId, icon);
+            }
+        }
+        return icon;
+    }
+
+    private static Bitmap decode(Resources resources, int iconSize, int artResourceId) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(resources, artResourceId, options);
+        int width = options.outWidth;
+        if (width <= 0) {
+            return null;
+        }
+
+        // Halve the size while decoding for as long as it stays at least as big as the icon,
+        // then have the decoder scale the rest of the way
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= iconSize) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inScaled = true;
+        options.inDensity = width / sampleSize;
+        options.inTargetDensity = iconSize;
+        return BitmapFactory.decodeResource(resources, artResourceId, options);
+    }
+
+    /**
+     * Stops the background thread.  Icons still being decoded are dropped, and no callback is
+     * called after this returns.  Must be called on the main thread.
+     */
+    void quit() {
+        mQuit = true;
+        mThread.quit();
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import com.example.android.sunshine.shared.ForecastPayload;
+import com.example.android.sunshine.shared.WeatherConditions;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.DataEvent;
+import com.google.android.gms.wearable.DataEventBuffer;
+import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataItemBuffer;
+import com.google.android.gms.wearable.DataMap;
+import com.google.android.gms.wearable.DataMapItem;
+import com.google.android.gms.wearable.PutDataRequest;
+import com.google.android.gms.wearable.Wearable;
+import com.google.android.gms.wearable.WearableListenerService;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Receives the forecast whenever the phone sends a new one, whether or not the watch face is
+ * showing, and keeps it in {@link WeatherStore} with its icons already decoded.  The watch face
+ * only reads what is stored here, so it doesn't need a connection to the phone of its own.
+ */
+public class WeatherListenerService extends WearableListenerService {
+    private static final String TAG = WeatherListenerService.class.getSimpleName();
+
+    static final String WEATHER_DATA_PATH = "/weather-data";
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    // Whether fetchForecast is already running, so that engines created in quick succession
+    // don't each start a connection
+    private static final AtomicBoolean sFetching = new AtomicBoolean();
+
+    @Override
+    public void onDataChanged(DataEventBuffer dataEvents) {
+        // Called on a background thread, so the icons can be decoded right here
+        for (DataEvent event : dataEvents) {
+            DataItem item = event.getDataItem();
+            if (event.getType() == DataEvent.TYPE_CHANGED
+                    && WEATHER_DATA_PATH.equals(item.getUri().getPath())) {
+                onWeatherDataItem(this, item);
+            } else if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Ignoring data event for " + item.getUri());
+            }
+        }
+    }
+
+    /**
+     * Fetches the forecast the phone last sent from the data layer, in the background.  This is
+     * only needed when nothing is stored yet, such as right after the app is installed on the
+     * watch, since the phone doesn't send the forecast again until it changes.  Does nothing if
+     * a fetch is already running.
+     */
+    static void fetchForecast(Context context) {
+        if (!sFetching.compareAndSet(false, true)) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    fetchForecastNow(appContext);
+                } finally {
+                    sFetching.set(false);
+                }
+            }
+        }, TAG).start();
+    }
+
+    private static void fetchForecastNow(Context context) {
+        // A forecast may have arrived while an earlier fetch was running
+        if (WeatherStore.loadForecast(context) != null) {
+            return;
+        }
+        GoogleApiClient googleApiClient = new GoogleApiClient.Builder(context)
+                .addApi(Wearable.API)
+                .build();
+        ConnectionResult connectionResult =
+                googleApiClient.blockingConnect(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!connectionResult.isSuccess()) {
+            Log.w(TAG, "Couldn't connect to fetch the forecast: " + connectionResult);
+            return;
+        }
+        try {
+            Uri uri = new Uri.Builder()
+                    .scheme(PutDataRequest.WEAR_URI_SCHEME)
+                    .path(WEATHER_DATA_PATH)
+                    .build();
+            DataItemBuffer dataItems = Wearable.DataApi.getDataItems(googleApiClient, uri)
+                    .await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            try {
+                for (DataItem item : dataItems) {
+                    onWeatherDataItem(context, item);
+                }
+            } finally {
+                dataItems.release();
+            }
+        } finally {
+            googleApiClient.disconnect();
+        }
+    }
+
+    private static void onWeatherDataItem(Context context, DataItem item) {
+        DataMap dataMap = DataMapItem.fromDataItem(item).getDataMap();
+        ForecastPayload forecast = ForecastPayload.fromBytes(
+                dataMap.getByteArray(ForecastPayload.KEY_FORECAST));
+        if (forecast == null) {
+            Log.w(TAG, "Ignoring a forecast this version can't read");
+            return;
+        }
+
+        // Decode the icons before saving, so that they're cached by the time the watch face
+        // hears about the new forecast
+        int[] artResourceIds = new int[forecast.getDayCount()];
+        for (int i = 0; i < artResourceIds.length; i++) {
+            artResourceIds[i] = WeatherConditions.getArtResource(forecast.getWeatherId(i));
+        }
+        WeatherIconLoader.prefetch(context.getResources(), WeatherIconLoader.ICON_SIZE,
+                artResourceIds);
+
+        if (WeatherStore.save(context, forecast)) {
+            Log.d(TAG, "Saved a forecast of " + forecast.getDayCount() + " days");
+        }
+    }
+}
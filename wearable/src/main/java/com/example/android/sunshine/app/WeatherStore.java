@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.format.Time;
+import android.util.Base64;
+
+import com.example.android.sunshine.shared.ForecastPayload;
+
+/**
+ * Keeps the last forecast the phone sent on the watch, so that the watch face can show it as
+ * soon as it starts instead of waiting for the phone's next sync.  Since the whole forecast is
+ * kept, the face moves on to the next day's weather at midnight by itself.
+ */
+class WeatherStore {
+    private static final String PREFS_NAME = "weather";
+    static final String KEY_FORECAST = "forecast";
+    private static final String KEY_CONTENT_HASH = "content_hash";
+
+    /**
+     * The weather shown on the watch face for one day.
+     */
+    static class Weather {
+        final int mWeatherId;
+        final String mHigh;
+        final String mLow;
+
+        Weather(int weatherId, String high, String low) {
+            mWeatherId = weatherId;
+            mHigh = high;
+            mLow = low;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Weather)) {
+                return false;
+            }
+            Weather other = (Weather) o;
+            return mWeatherId == other.mWeatherId
+                    && equals(mHigh, other.mHigh)
+                    && equals(mLow, other.mLow);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * mWeatherId + (mHigh != null ? mHigh.hashCode() : 0))
+                    + (mLow != null ? mLow.hashCode() : 0);
+        }
+
+        private static boolean equals(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    /**
+     * @return the forecast last saved, or null if the phone hasn't sent one yet
+     */
+    static ForecastPayload loadForecast(Context context) {
+        String forecast = getPrefs(context).getString(KEY_FORECAST, null);
+        if (forecast == null) {
+            return null;
+        }
+        return ForecastPayload.fromBytes(Base64.decode(forecast, Base64.NO_WRAP));
+    }
+
+    /**
+     * Saves the forecast, unless it is the forecast already saved.
+     *
+     * @return true if the forecast was different from the saved forecast
+     */
+    static boolean save(Context context, ForecastPayload forecast) {
+        SharedPreferences prefs = getPrefs(context);
+        long contentHash = forecast.getContentHash();
+        if (prefs.contains(KEY_FORECAST) && contentHash == prefs.getLong(KEY_CONTENT_HASH, 0)) {
+            return false;
+        }
+        prefs.edit()
+                .putString(KEY_FORECAST, Base64.encodeToString(forecast.toBytes(), Base64.NO_WRAP))
+                .putLong(KEY_CONTENT_HASH, contentHash)
+                .apply();
+        return true;
+    }
+
+    /**
+     * Registers a listener to be told on the main thread when a saved value changes, such as
+     * {@link #KEY_FORECAST} when a new forecast is saved.  The listener is only weakly held, so
+     * the caller has to keep a reference to it.
+     */
+    static void registerListener(Context context,
+                                 SharedPreferences.OnSharedPreferenceChangeListener listener) {
+        getPrefs(context).registerOnSharedPreferenceChangeListener(listener);
+    }
+
+    static void unregisterListener(Context context,
+                                   SharedPreferences.OnSharedPreferenceChangeListener listener) {
+        getPrefs(context).unregisterOnSharedPreferenceChangeListener(listener);
+    }
+
+    /**
+     * @return the weather of one day of the forecast
+     */
+    static Weather getWeather(ForecastPayload forecast, int day) {
+        return new Weather(forecast.getWeatherId(day),
+                formatTemperature(forecast.getHigh(day)),
+                formatTemperature(forecast.getLow(day)));
+    }
+
+    /**
+     * @return today's weather, or null if the forecast doesn't include today
+     */
+    static Weather getTodaysWeather(ForecastPayload forecast) {
+        int day = forecast.indexOfJulianDay(getTodaysJulianDay());
+        return day == -1 ? null : getWeather(forecast, day);
+    }
+
+    static int getTodaysJulianDay() {
+        Time time = new Time();
+        time.setToNow();
+        return Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+    }
+
+    // The phone has already converted the temperatures to the user's units
+    static String formatTemperature(int degrees) {
+        return degrees + "\u00B0";
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}